@@ -0,0 +1,149 @@
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * The end of a record batch pipeline that keeps only running aggregates of the records it
+ * receives, so a whole file can be summarized in memory bounded by the pipeline's buffers. The
+ * summary covers the range from the smallest to the largest year seen, with the same values
+ * summarizeRange() gives for a list holding the records.
+ */
+public class AggregateSubscriber implements Flow.Subscriber<List<IceDataEntry>> {
+  /**
+   * Histogram of the days of ice cover seen
+   */
+  private final DurationHistogram histogram = new DurationHistogram();
+  /**
+   * Least squares trend of the days of ice cover seen
+   */
+  private final TrendStats trend = new TrendStats();
+  /**
+   * Completed with the summary when the pipeline completes
+   */
+  private final CompletableFuture<RangeSummary> result = new CompletableFuture<>();
+  /**
+   * The upstream subscription
+   */
+  private Flow.Subscription subscription;
+  /**
+   * Number of records seen
+   */
+  private int count;
+  /**
+   * Total days of ice cover seen
+   */
+  private long totalDays;
+  /**
+   * Minimum days of ice cover seen
+   */
+  private int minDays = Integer.MAX_VALUE;
+  /**
+   * Maximum days of ice cover seen
+   */
+  private int maxDays = Integer.MIN_VALUE;
+  /**
+   * Earliest freeze day of the season seen, MAX_VALUE if none
+   */
+  private int earliestFreeze = Integer.MAX_VALUE;
+  /**
+   * Latest thaw day of the season seen, -1 if none
+   */
+  private int latestThaw = -1;
+  /**
+   * Smallest year seen
+   */
+  private int minYear = Integer.MAX_VALUE;
+  /**
+   * Largest year seen
+   */
+  private int maxYear = Integer.MIN_VALUE;
+
+  /**
+   * Gets the summary, completed when the pipeline completes.
+   *
+   * @return a future holding the summary of every record, or the pipeline's error
+   */
+  public CompletableFuture<RangeSummary> getResult() {
+    return result;
+  }
+
+  /**
+   * Gets the histogram of the days of ice cover seen. Only complete once getResult() is done.
+   *
+   * @return the histogram
+   */
+  public DurationHistogram getDurationHistogram() {
+    return histogram;
+  }
+
+  /**
+   * Gets the trend of the days of ice cover seen. Only complete once getResult() is done.
+   *
+   * @return the trend
+   */
+  public TrendStats getTrend() {
+    return trend;
+  }
+
+  /**
+   * Requests the first batch.
+   *
+   * @param subscription the upstream subscription
+   */
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    this.subscription = subscription;
+    subscription.request(1);
+  }
+
+  /**
+   * Adds a batch to the aggregates, then requests the next one.
+   *
+   * @param batch the records received from upstream
+   */
+  @Override
+  public void onNext(List<IceDataEntry> batch) {
+    for (IceDataEntry record : batch) {
+      int days = record.getDaysOfIceCover();
+      count++;
+      totalDays += days;
+      minDays = Math.min(minDays, days);
+      maxDays = Math.max(maxDays, days);
+      int freeze = DateUtil.dayOfSeason(record.getFreezeDate());
+      if (freeze != -1) {
+        earliestFreeze = Math.min(earliestFreeze, freeze);
+      }
+      latestThaw = Math.max(latestThaw, DateUtil.dayOfSeason(record.getThawDate()));
+      minYear = Math.min(minYear, record.getYear());
+      maxYear = Math.max(maxYear, record.getYear());
+      histogram.add(days);
+      if (days != IceDataEntry.MISSING) {
+        trend.add(record.getYear(), days);
+      }
+    }
+    subscription.request(1);
+  }
+
+  /**
+   * Fails the result with the pipeline's error.
+   *
+   * @param error the upstream failure
+   */
+  @Override
+  public void onError(Throwable error) {
+    result.completeExceptionally(error);
+  }
+
+  /**
+   * Completes the result with the summary of every record seen.
+   */
+  @Override
+  public void onComplete() {
+    if (count == 0) {
+      result.complete(new RangeSummary(0, 0, 0, 0, 0, 0, null, null));
+      return;
+    }
+    result.complete(new RangeSummary(minYear, maxYear, count, totalDays, minDays, maxDays,
+        DateUtil.dateOfSeason(earliestFreeze), DateUtil.dateOfSeason(latestThaw)));
+  }
+}
@@ -0,0 +1,107 @@
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * The end of a record batch pipeline that builds a LakeIceAnalyzer from the batches it receives,
+ * requesting one batch at a time. The finished list is available from getResult() once the
+ * pipeline completes.
+ */
+public class AnalyzerSubscriber implements Flow.Subscriber<List<IceDataEntry>> {
+  /**
+   * The list being built
+   */
+  private LakeIceAnalyzer analyzer = new LakeIceAnalyzer();
+  /**
+   * Whether the records arrive newest first and must be reversed
+   */
+  private final boolean newestFirst;
+  /**
+   * Completed with the list when the pipeline completes
+   */
+  private final CompletableFuture<LakeIceAnalyzer> result = new CompletableFuture<>();
+  /**
+   * The upstream subscription
+   */
+  private Flow.Subscription subscription;
+
+  /**
+   * Creates a subscriber that keeps the records in the order they arrive.
+   */
+  public AnalyzerSubscriber() {
+    this(false);
+  }
+
+  /**
+   * Creates a subscriber for records in the given order.
+   *
+   * @param newestFirst true if the records arrive newest first, as in the lake csv files, so that
+   *                    the list is built in chronological order like LakeRecordReader's; each
+   *                    batch is then reversed and linked in front of the records before it
+   */
+  public AnalyzerSubscriber(boolean newestFirst) {
+    this.newestFirst = newestFirst;
+  }
+
+  /**
+   * Gets the list, completed when the pipeline completes.
+   *
+   * @return a future holding the built list, or the pipeline's error
+   */
+  public CompletableFuture<LakeIceAnalyzer> getResult() {
+    return result;
+  }
+
+  /**
+   * Requests the first batch.
+   *
+   * @param subscription the upstream subscription
+   */
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    this.subscription = subscription;
+    subscription.request(1);
+  }
+
+  /**
+   * Adds a batch to the list, then requests the next one. When reversing, the batch is built into
+   * a list of its own in reverse and the records so far are moved onto its end in O(1) time, so no
+   * batch is held back.
+   *
+   * @param batch the records received from upstream
+   */
+  @Override
+  public void onNext(List<IceDataEntry> batch) {
+    if (newestFirst) {
+      LakeIceAnalyzer older = new LakeIceAnalyzer();
+      for (int i = batch.size() - 1; i >= 0; i--) {
+        older.add(batch.get(i));
+      }
+      older.addAll(analyzer);
+      analyzer = older;
+    } else {
+      for (IceDataEntry record : batch) {
+        analyzer.add(record);
+      }
+    }
+    subscription.request(1);
+  }
+
+  /**
+   * Fails the result with the pipeline's error.
+   *
+   * @param error the upstream failure
+   */
+  @Override
+  public void onError(Throwable error) {
+    result.completeExceptionally(error);
+  }
+
+  /**
+   * Completes the result with the built list.
+   */
+  @Override
+  public void onComplete() {
+    result.complete(analyzer);
+  }
+}
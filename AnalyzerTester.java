@@ -1,7 +1,22 @@
 
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tester class for FreezeTracker functionality.
@@ -285,6 +300,1133 @@ public class AnalyzerTester {
     return filtered.size() == 2;
   }
 
+  /**
+   * Tests the year-range total, count and average, including after appending and removing records.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testYearRangeStatistics() {
+    LakeIceAnalyzer ft = new LakeIceAnalyzer();
+    IceDataEntry r1 = new IceDataEntry("2018-19", "December 1", "March 1", 90);
+    ft.add(r1);
+    ft.add(new IceDataEntry("2019-20", "December 5", "March 2", 80));
+    ft.add(new IceDataEntry("2020-21", "December 10", "February 28", 70));
+    boolean before = ft.getTotalFreezeDuration(2019, 2020) == 150 && ft.countByYear(2019, 2020) == 2
+        && Math.abs(ft.getAverageFreezeDuration(2018, 2019) - 85f) < 0.0001f
+        && ft.getAverageFreezeDuration(1900, 1950) == 0;
+
+    // appending in order extends the index; removing rebuilds it
+    ft.add(new IceDataEntry("2021-22", "December 12", "March 5", 60));
+    boolean appended = ft.getTotalFreezeDuration(2020, 2030) == 130;
+    ft.remove(r1);
+    boolean removed = ft.countByYear(0, 3000) == 3 && ft.getTotalFreezeDuration(0, 3000) == 210;
+
+    return before && appended && removed;
+  }
+
+  /**
+   * Tests the year-range minimum, maximum, earliest freeze and latest thaw, including after a
+   * record is changed in place.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testYearRangeExtremes() {
+    LakeIceAnalyzer ft = new LakeIceAnalyzer();
+    ft.add(new IceDataEntry("2017-18", "November 20", "April 10", 140));
+    ft.add(new IceDataEntry("2018-19", "December 1", "March 1", 90));
+    IceDataEntry r = new IceDataEntry("2019-20", "December 5", "March 20", 80);
+    ft.add(r);
+    ft.add(new IceDataEntry("2020-21", "December 10", "February 28", 70));
+    boolean before = ft.getMinFreezeDuration(2018, 2019) == 80
+        && ft.getMaxFreezeDuration(2018, 2020) == 90
+        && ft.getEarliestFreeze(2018, 2020).equals("December 1")
+        && ft.getLatestThaw(2018, 2020).equals("March 20")
+        && ft.getEarliestFreeze(1900, 1910) == null;
+
+    // merge a second freeze event into 2019-20 and patch the tree
+    r.mergeWith(new IceDataEntry("2019-20", "November 28", "December 3", 5));
+    ft.refresh(r);
+    boolean after = ft.getEarliestFreeze(2018, 2020).equals("November 28")
+        && ft.getMaxFreezeDuration(2019, 2019) == 85
+        && ft.getTotalFreezeDuration(2019, 2020) == 155;
+
+    return before && after;
+  }
+
+  /**
+   * Tests summarizing several year ranges in one batch, including an empty range.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testSummarizeRanges() {
+    LakeIceAnalyzer ft = new LakeIceAnalyzer();
+    ft.add(new IceDataEntry("2017-18", "November 20", "April 10", 140));
+    ft.add(new IceDataEntry("2018-19", "December 1", "March 1", 90));
+    ft.add(new IceDataEntry("2019-20", "December 5", "March 20", 80));
+    ft.add(new IceDataEntry("2020-21", "December 10", "February 28", 70));
+
+    RangeSummary[] summaries =
+        ft.summarizeRanges(new int[] {2018, 1900, 2017}, new int[] {2019, 1950, 2030});
+    RangeSummary a = summaries[0];
+    RangeSummary b = summaries[1];
+    RangeSummary c = summaries[2];
+    return summaries.length == 3 && a.getCount() == 2 && a.getTotalDays() == 170
+        && a.getMinDays() == 80 && a.getMaxDays() == 90 && a.getLatestThaw().equals("March 20")
+        && b.getCount() == 0 && b.getEarliestFreeze() == null && c.getCount() == 4
+        && c.getEarliestFreeze().equals("November 20")
+        && Math.abs(c.getAverageDays() - 95f) < 0.0001f
+        && ft.summarizeRange(2020, 2020).getMaxDays() == 70;
+  }
+
+  /**
+   * Tests selecting the longest and shortest winters and the earliest freezes and latest thaws,
+   * including a list large enough to be scanned in parallel.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testTopK() {
+    LakeIceAnalyzer ft = new LakeIceAnalyzer();
+    ft.add(new IceDataEntry("2017-18", "November 20", "April 10", 140));
+    ft.add(new IceDataEntry("2018-19", "December 1", "March 1", 90));
+    ft.add(new IceDataEntry("2019-20", "December 5", "March 20", 80));
+    ft.add(new IceDataEntry("2020-21", "December 10", "February 28", 90));
+    ArrayList<IceDataEntry> longest = ft.topKByDuration(3, true);
+    ArrayList<IceDataEntry> shortest = ft.topKByDuration(1, false);
+    boolean small = longest.size() == 3 && longest.get(0).getWinter().equals("2017-18")
+        && longest.get(1).getWinter().equals("2018-19")
+        && longest.get(2).getWinter().equals("2020-21")
+        && shortest.get(0).getWinter().equals("2019-20")
+        && ft.topKByFreeze(1, true).get(0).getWinter().equals("2017-18")
+        && ft.topKByThaw(2, false).get(0).getWinter().equals("2020-21")
+        && ft.topKByDuration(10, true).size() == 4 && ft.topKByDuration(0, true).isEmpty();
+
+    // a long list takes the parallel path; the single longest winter is planted in the middle
+    LakeIceAnalyzer big = new LakeIceAnalyzer();
+    for (int year = 0; year < 100000; year++) {
+      int days = year == 54321 ? 500 : year % 200;
+      big.add(new IceDataEntry(String.format("%04d", year % 10000) + "-xx", "December 1",
+          "March 1", days));
+    }
+    ArrayList<IceDataEntry> top = big.topKByDuration(2, true);
+    return small && top.get(0).getDaysOfIceCover() == 500 && top.get(1).getDaysOfIceCover() == 199;
+  }
+
+  /**
+   * Tests filtering freeze records by freeze and thaw date windows.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testFilterBySeasonWindow() {
+    LakeIceAnalyzer ft = new LakeIceAnalyzer();
+    ft.add(new IceDataEntry("2017-18", "November 20", "April 10", 140));
+    ft.add(new IceDataEntry("2018-19", "December 10", "March 1", 81));
+    ft.add(new IceDataEntry("2019-20", "December 5", "April 1", 118));
+    ft.add(new IceDataEntry("2020-21", "January 2", "February 28", 57));
+
+    LakeIceAnalyzer early = ft.filterByFreezeWindow("August 1", "December 9");
+    LakeIceAnalyzer late = ft.filterByThawWindow("April 2", "July 31");
+    boolean invalid = false;
+    try {
+      ft.filterByThawWindow("Apr 2", "July 31");
+    } catch (IllegalArgumentException e) {
+      invalid = true;
+    }
+    return early.size() == 2 && early.get(0).getWinter().equals("2017-18")
+        && early.get(1).getWinter().equals("2019-20") && late.size() == 1
+        && late.get(0).getWinter().equals("2017-18")
+        && ft.filterByFreezeWindow("December 10", "January 31").size() == 2 && invalid;
+  }
+
+  /**
+   * Tests that cached query results are reused until the list changes, and that the cache stays
+   * within its bounds.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testQueryCache() {
+    LakeIceAnalyzer ft = new LakeIceAnalyzer();
+    ft.add(new IceDataEntry("2019-20", "December 5", "March 2", 88));
+    ft.add(new IceDataEntry("2020-21", "December 1", "March 1", 90));
+    ft.enableQueryCache(2, 100);
+    QueryCache cache = ft.getQueryCache();
+
+    LakeIceAnalyzer first = ft.filterByYear(2020);
+    boolean reused = ft.filterByYear(2020).toString().equals(first.toString())
+        && ft.getMaxFreezeDuration() == 90 && ft.getMaxFreezeDuration() == 90
+        && cache.getHits() == 2 && cache.getMisses() == 2;
+
+    // a third query evicts the least recently used one; a change invalidates everything
+    ft.getMinFreezeDuration();
+    boolean evicted = cache.size() == 2 && cache.getEvictions() == 1;
+    ft.add(new IceDataEntry("2021-22", "December 10", "March 5", 95));
+    long misses = cache.getMisses();
+    boolean invalidated = ft.getMaxFreezeDuration() == 95 && ft.filterByYear(2020).size() == 1
+        && cache.getMisses() == misses + 2;
+
+    // modifying, reversing or editing the records of a returned list does not poison the cache
+    LakeIceAnalyzer second = ft.filterByYear(2019, 2021);
+    String expected = second.toString();
+    second.setReversed(true);
+    second.get(0).mergeWith(new IceDataEntry("2019-20", "November 1", "April 30", 10));
+    boolean untouched = ft.filterByYear(2019, 2021).toString().equals(expected);
+    second.clear();
+    return reused && evicted && invalidated && untouched
+        && ft.filterByYear(2019, 2021).size() == 3;
+  }
+
+  /**
+   * Tests cross-lake queries on a registry of several lakes.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testLakeRegistry() {
+    LakeIceAnalyzer mendota = new LakeIceAnalyzer();
+    mendota.add(new IceDataEntry("1950-51", "December 10", "April 1", 112));
+    mendota.add(new IceDataEntry("1951-52", "December 15", "April 5", 100));
+    LakeIceAnalyzer monona = new LakeIceAnalyzer();
+    monona.add(new IceDataEntry("1950-51", "December 1", "March 25", 114));
+    monona.add(new IceDataEntry("1990-91", "December 20", "March 1", 71));
+    LakeIceAnalyzer wingra = new LakeIceAnalyzer();
+    wingra.add(new IceDataEntry("1950-51", "November 28", "April 3", 126));
+
+    LakeRegistry registry = new LakeRegistry();
+    registry.register("mendota", mendota);
+    registry.register("monona", monona);
+    registry.register("wingra", wingra);
+
+    ArrayList<String> earliest = registry.getEarliestFreezeLakes(1950, 2);
+
+    // one lake under many ids is queried by several workers at once; its lazily built structures
+    // and result cache must still give each of them the full answer
+    LakeIceAnalyzer shared = new LakeIceAnalyzer();
+    long sharedTotal = 0;
+    for (int year = 1800; year < 2000; year++) {
+      shared.add(new IceDataEntry(year + "-" + String.format("%02d", (year + 1) % 100),
+          "December 1", "April 1", 100 + year % 20));
+      sharedTotal += year >= 1850 && year <= 1949 ? 100 + year % 20 : 0;
+    }
+    shared.enableQueryCache(8, 1000);
+    LakeRegistry many = new LakeRegistry();
+    for (int i = 0; i < 64; i++) {
+      many.register("lake" + i, shared);
+    }
+    boolean concurrent = many.getDurationHistogram().count() == 64 * 200
+        && many.getTotalFreezeDuration(1850, 1949) == 64 * sharedTotal
+        && many.countByYear(1850, 1949) == 64 * 100;
+
+    return concurrent && registry.size() == 3 && registry.countByYear(1950, 1980) == 4
+        && registry.getTotalFreezeDuration(1950, 1980) == 452
+        && Math.abs(registry.getAverageFreezeDuration(1950, 1980) - 113f) < 0.0001f
+        && earliest.size() == 2 && earliest.get(0).equals("wingra")
+        && earliest.get(1).equals("monona")
+        && registry.summarizeEach(1990, 1999).get("monona").getCount() == 1;
+  }
+
+  /**
+   * Tests joining two lakes by winter and building a correlation matrix.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testLakeJoin() {
+    LakeIceAnalyzer a = new LakeIceAnalyzer();
+    a.add(new IceDataEntry("1950-51", "December 10", "April 1", 100));
+    a.add(new IceDataEntry("1951-52", "December 15", "April 5", 90));
+    a.add(new IceDataEntry("1952-53", "December 20", "April 5", 80));
+    a.add(new IceDataEntry("1960-61", "December 20", "April 5", 70));
+    LakeIceAnalyzer b = new LakeIceAnalyzer();
+    b.add(new IceDataEntry("1949-50", "December 1", "March 25", 120));
+    b.add(new IceDataEntry("1950-51", "December 5", "March 25", 110));
+    b.add(new IceDataEntry("1951-52", "December 12", "March 25", 100));
+    b.add(new IceDataEntry("1952-53", "December 15", "March 25", 90));
+
+    PairedStats stats = LakeJoin.join(a, b);
+    double[][] matrix = LakeJoin.correlationMatrix(a, b, a);
+    return stats.getCount() == 3 && Math.abs(stats.getMeanFreezeDifference() - 13.0 / 3) < 1e-9
+        && Math.abs(stats.getCorrelation() - 1) < 1e-9 && matrix.length == 3
+        && Math.abs(matrix[0][1] - 1) < 1e-9 && Math.abs(matrix[2][0] - 1) < 1e-9
+        && matrix[1][1] == 1;
+  }
+
+  /**
+   * Tests moving statistics over windows of consecutive winters.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testRollingStats() {
+    LakeIceAnalyzer ft = new LakeIceAnalyzer();
+    int[] days = {100, 80, 120, 90, 60};
+    for (int i = 0; i < days.length; i++) {
+      ft.add(new IceDataEntry((2000 + i) + "-xx", "December 1", "March 1", days[i]));
+    }
+
+    RollingStats stats = ft.getRollingStats(3, true);
+    return stats.size() == 3 && stats.getEndYears()[0] == 2002 && stats.getEndYears()[2] == 2004
+        && Math.abs(stats.getMean()[0] - 100) < 1e-9 && Math.abs(stats.getMean()[2] - 90) < 1e-9
+        && stats.getMin()[0] == 80 && stats.getMin()[2] == 60 && stats.getMax()[1] == 120
+        && stats.getMax()[2] == 120 && Math.abs(stats.getStdDev()[2] - Math.sqrt(600)) < 1e-9
+        && ft.getRollingStats(10, false).size() == 0 && stats.getWindow() == 3;
+  }
+
+  /**
+   * Tests percentiles and histograms of the days of ice cover as records are added and removed.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testDurationPercentiles() {
+    LakeIceAnalyzer ft = new LakeIceAnalyzer();
+    for (int i = 1; i <= 10; i++) {
+      ft.add(new IceDataEntry((2000 + i) + "-xx", "December 1", "March 1", i * 10));
+    }
+    boolean initial = ft.getMedianFreezeDuration() == 50
+        && ft.getFreezeDurationPercentile(90) == 90 && ft.getFreezeDurationPercentile(10) == 10;
+
+    // the histogram is now built, so these updates are applied incrementally
+    ft.add(new IceDataEntry("2011-12", "December 1", "March 1", 200));
+    IceDataEntry missing = new IceDataEntry("2012-13", "December 1", "March 1", -1);
+    ft.add(missing);
+    ft.remove(ft.get(0));
+    boolean updated =
+        ft.getFreezeDurationPercentile(100) == 200 && ft.getMedianFreezeDuration() == 60;
+    ft.updateDurations();
+    boolean fixed = ft.getFreezeDurationPercentile(100) == 200
+        && ft.getDurationHistogram().count() == 11;
+
+    DurationHistogram merged = ft.getDurationHistogram().merge(ft.getDurationHistogram());
+    long[] bins = merged.toBins(100);
+    return initial && updated && fixed && merged.count() == 22 && bins[0] == 18 && bins[2] == 2;
+  }
+
+  /**
+   * Tests the least squares and Theil-Sen trends over the whole list and over a range of years.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testTrend() {
+    LakeIceAnalyzer ft = new LakeIceAnalyzer();
+    for (int i = 0; i < 10; i++) {
+      ft.add(new IceDataEntry((1990 + i) + "-xx", "December 1", "March 1", 120 - 2 * i));
+    }
+    boolean linear = Math.abs(ft.getTrend().getDaysPerDecade() + 20) < 1e-9
+        && Math.abs(ft.getTrend().predict(2000) - 100) < 1e-9
+        && Math.abs(ft.getTrend(1990, 1994).getSlope() + 2) < 1e-9
+        && Math.abs(ft.getTheilSenSlope(0, 3000) + 2) < 1e-9;
+
+    // one outlier pulls the least squares fit but not the Theil-Sen slope
+    IceDataEntry outlier = new IceDataEntry("2000-01", "December 1", "March 1", 300);
+    ft.add(outlier);
+    boolean robust = ft.getTrend().getSlope() > 0
+        && Math.abs(ft.getTheilSenSlope(0, 3000) + 2) < 1e-9 && ft.getTrend().count() == 11;
+    ft.remove(outlier);
+    return linear && robust && Math.abs(ft.getTrend().getSlope() + 2) < 1e-9
+        && Double.isNaN(ft.getTrend(1990, 1990).getSlope());
+  }
+
+  /**
+   * Tests that an attached anomaly detector flags unusual winters as they are added.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testAnomalyDetector() {
+    LakeIceAnalyzer ft = new LakeIceAnalyzer();
+    for (int i = 0; i < 20; i++) {
+      ft.add(new IceDataEntry((1980 + i) + "-xx", "December " + (10 + i % 5), "March 1",
+          100 + i % 7));
+    }
+
+    AnomalyDetector detector = new AnomalyDetector(3, 0, 0, 10);
+    ArrayList<String> alerts = new ArrayList<>();
+    detector.addListener(
+        (record, metric, value, z) -> alerts.add(record.getWinter() + " " + metric));
+    ft.setAnomalyDetector(detector);
+
+    ft.add(new IceDataEntry("2000-01", "December 12", "March 1", 104));
+    boolean normal = alerts.isEmpty();
+    ft.add(new IceDataEntry("2001-02", "January 20", "March 1", 40));
+    boolean flagged = alerts.size() == 2 && alerts.contains("2001-02 duration")
+        && alerts.contains("2001-02 freezeDate") && detector.getDurationStdDev() > 0;
+
+    // a listener that throws still leaves the list and its derived data up to date
+    ft.enableQueryCache(16, 1000);
+    long before = ft.getTotalFreezeDuration(1980, 2010);
+    detector.addListener((record, metric, value, z) -> {
+      throw new IllegalStateException("listener failed");
+    });
+    try {
+      ft.add(new IceDataEntry("2002-03", "January 25", "March 1", 30));
+      return false;
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    return normal && flagged && ft.size() == 23 && ft.countByYear(2002, 2002) == 1
+        && ft.getTotalFreezeDuration(1980, 2010) == before + 30;
+  }
+
+  /**
+   * Tests decade and century rollups, including after removing an extreme record and merging a
+   * split winter.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testRollups() {
+    LakeIceAnalyzer ft = new LakeIceAnalyzer();
+    ft.add(new IceDataEntry("1948-49", "December 1", "March 1", 90));
+    IceDataEntry longest = new IceDataEntry("1951-52", "November 20", "April 10", 140);
+    ft.add(longest);
+    ft.add(new IceDataEntry("1955-56", "December 5", "March 20", 80));
+    ft.add(new IceDataEntry("1959-60", "December 10", "February 28", 70));
+    RangeSummary fifties = ft.getDecadeSummary(1953);
+    boolean built = fifties.getYear1() == 1950 && fifties.getYear2() == 1959
+        && fifties.getCount() == 3 && fifties.getMaxDays() == 140
+        && fifties.getEarliestFreeze().equals("November 20")
+        && ft.getCenturySummary(1999).getCount() == 4;
+
+    ft.remove(longest);
+    ft.add(new IceDataEntry("1959-60", "March 1", "March 11", 10));
+    ft.mergeWinters();
+    ArrayList<RangeSummary> decades = ft.getDecadeSummaries(1940, 1969);
+    return built && decades.size() == 3 && decades.get(0).getCount() == 1
+        && decades.get(1).getCount() == 2 && decades.get(1).getMaxDays() == 80
+        && decades.get(1).getTotalDays() == 160 && decades.get(1).getLatestThaw().equals("March 20")
+        && decades.get(2).getCount() == 0 && ft.getCenturySummary(1900).getMinDays() == 80;
+  }
+
+  /**
+   * Tests storing records off-heap, including reading them back, aggregates and removal.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testOffHeapRecordStore() {
+    OffHeapRecordStore store = new OffHeapRecordStore();
+    IceDataEntry r1 = new IceDataEntry("2019-20", "December 5", "March 20", 80);
+    IceDataEntry r2 = new IceDataEntry("2020-21", "November 28", "April 2", 120);
+    IceDataEntry r3 = new IceDataEntry("2021-22", null, "March 1", IceDataEntry.MISSING);
+    store.add(r1);
+    store.add(r2);
+    store.add(r3);
+    boolean stored = store.size() == 3 && store.get(0).equals(r1) && store.get(2).equals(r3)
+        && store.getTotalFreezeDuration() == 199 && store.getMaxFreezeDuration() == 120
+        && store.getEarliestFreeze().equals("November 28")
+        && store.getLatestThaw().equals("April 2") && store.countByYear(2020, 2030) == 2;
+
+    boolean removed = store.remove(r2) && !store.remove(r2) && store.size() == 2
+        && store.get(1).equals(r3) && store.toAnalyzer().get(0).equals(r1);
+
+    // a date that would not read back unchanged is rejected rather than stored as missing
+    boolean rejected = false;
+    try {
+      store.add(new IceDataEntry("2022-23", "Dec 5", "March 1", 86));
+    } catch (IllegalArgumentException e) {
+      rejected = store.size() == 2;
+    }
+
+    // enough records to span several buffers
+    OffHeapRecordStore big = new OffHeapRecordStore();
+    for (int i = 0; i < 200000; i++) {
+      big.add(new IceDataEntry("1900-01", "December 1", "March 1", i % 100));
+    }
+    int count = 0;
+    for (IceDataEntry r : big) {
+      count += r.getDaysOfIceCover() == 99 ? 1 : 0;
+    }
+    return stored && removed && rejected && count == 2000
+        && big.getTotalFreezeDuration() == 2000L * 4950;
+  }
+
+  /**
+   * Tests writing records to a mapped archive and querying the mapped columns.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testMappedLakeArchive() {
+    LakeIceAnalyzer source = new LakeIceAnalyzer();
+    IceDataEntry r1 = new IceDataEntry("1899–1900", "December 5", "March 20", 80);
+    IceDataEntry r2 = new IceDataEntry("1900-01", "November 28", "April 2", 120);
+    IceDataEntry r3 = new IceDataEntry("1901-02", null, "March 1", IceDataEntry.MISSING);
+    source.add(r1);
+    source.add(r2);
+    source.add(r3);
+
+    Path file = null;
+    try {
+      file = Files.createTempFile("lake", ".lia");
+      MappedLakeArchive.write(file, source);
+      MappedLakeArchive archive = new MappedLakeArchive(file);
+      boolean read = archive.size() == 3 && archive.get(0).equals(r1)
+          && archive.get(2).equals(r3) && archive.getFreezeDay(2) == -1
+          && archive.getTotalFreezeDuration(1900, 1901) == 119
+          && archive.countByYear(1900, 2000) == 2 && archive.getMaxFreezeDuration() == 120
+          && archive.toAnalyzer().size() == 3;
+
+      // a second mapping of the same file sees the same records
+      int count = 0;
+      for (IceDataEntry r : new MappedLakeArchive(file)) {
+        count += r.equals(source.get(count)) ? 1 : 0;
+      }
+
+      // rewriting the archive leaves an existing mapping reading the old records
+      LakeIceAnalyzer smaller = new LakeIceAnalyzer();
+      smaller.add(r2);
+      MappedLakeArchive.write(file, smaller);
+      MappedLakeArchive rewritten = new MappedLakeArchive(file);
+      boolean replaced = archive.size() == 3 && archive.get(2).equals(r3)
+          && rewritten.size() == 1 && rewritten.get(0).equals(r2);
+
+      // a truncated file is rejected when it is opened
+      boolean truncated = false;
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.truncate(channel.size() - 3);
+      }
+      try {
+        new MappedLakeArchive(file);
+      } catch (UncheckedIOException e) {
+        truncated = e.getMessage().contains("truncated");
+      }
+      return read && count == 3 && replaced && truncated;
+    } catch (IOException e) {
+      return false;
+    } finally {
+      if (file != null) {
+        file.toFile().delete();
+      }
+    }
+  }
+
+  /**
+   * Tests writing and reading a compressed archive, including missing values, unusual winters and
+   * block skipping.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testCompressedArchive() {
+    LakeIceAnalyzer source = new LakeIceAnalyzer();
+    source.add(new IceDataEntry("1899–1900", "December 5", "March 20", 80));
+    source.add(new IceDataEntry("1900-01", null, "April 2", IceDataEntry.MISSING));
+    long knownDays = 80;
+    for (int year = 1901; year < 2000; year++) {
+      knownDays += 90 + year % 40;
+      source.add(new IceDataEntry(year + "-" + String.format("%02d", (year + 1) % 100),
+          "December " + (1 + year % 28), "April " + (1 + year % 20), 90 + year % 40));
+    }
+
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (CompressedArchiveWriter writer = new CompressedArchiveWriter(bytes, 16)) {
+        writer.addAll(source);
+      }
+
+      LakeIceAnalyzer all;
+      try (CompressedArchiveReader reader =
+          new CompressedArchiveReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+        all = reader.readAll();
+      }
+      boolean same = all.size() == source.size();
+      for (int i = 0; same && i < all.size(); i++) {
+        same = all.get(i).equals(source.get(i));
+      }
+
+      LakeIceAnalyzer range;
+      try (CompressedArchiveReader reader =
+          new CompressedArchiveReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+        range = reader.readRange(1950, 1959);
+      }
+      float average;
+      try (CompressedArchiveReader reader =
+          new CompressedArchiveReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+        average = reader.getAverageFreezeDuration();
+      }
+
+      // a block whose columns were passed over cannot be decoded, and the next block follows it
+      boolean skipped = false;
+      try (DataInputStream in =
+          new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+        in.readInt(); // the archive magic
+        CompressedBlock header = CompressedBlock.readHeader(in);
+        header.skipPayload(in);
+        CompressedBlock next = CompressedBlock.readFrom(in);
+        try {
+          header.decode();
+        } catch (IllegalStateException e) {
+          skipped = next.decode().get(0).equals(source.get(header.size()));
+        }
+      }
+
+      // a few bytes per record even with small blocks, against twenty or more as text
+      return same && skipped && range.size() == 10 && range.get(0).getYear() == 1950
+          && Math.abs(average - knownDays / 100f) < 0.01
+          && bytes.size() < 12 * source.size();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Tests following a growing csv file, including partial lines and split seasons.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testLakeTailReader() {
+    Path file = null;
+    try {
+      file = Files.createTempFile("lake", ".csv");
+      Files.writeString(file, "Winter,Freeze-Over Date,Thaw Date,Days of Ice Cover\n"
+          + "1900-01,December 5,March 20,80\n1901-02,December 1,");
+      LakeIceAnalyzer analyzer = new LakeIceAnalyzer();
+      LakeTailReader tail = new LakeTailReader(file, analyzer);
+      boolean first = tail.poll() == 1 && analyzer.size() == 1;
+
+      // the half-written line is only read once it is complete
+      Files.writeString(file, "April 1,95\n1900-01,March 25,April 4,10\n",
+          StandardOpenOption.APPEND);
+      boolean second = tail.poll() == 2 && analyzer.size() == 2
+          && analyzer.get(0).getDaysOfIceCover() == 90
+          && analyzer.get(0).getThawDate().equals("April 4")
+          && analyzer.getLatestThaw().equals("April 4")
+          && analyzer.getTotalFreezeDuration(1900, 1901) == 185;
+
+      boolean idle = tail.poll() == 0 && tail.getOffset() == Files.size(file);
+
+      // a line without a thaw date is skipped, as it is when the file is loaded
+      Files.writeString(file, "1902-03,December 3,--,50\n", StandardOpenOption.APPEND);
+      boolean incomplete = tail.poll() == 0 && analyzer.size() == 2
+          && analyzer.countByYear(1902, 1902) == 0 && tail.getOffset() == Files.size(file);
+
+      // a malformed line is rejected without stopping the lines after it, and is not re-read
+      Files.writeString(file, "1903-04,February 30,April 1,50\n1904-05,December 1,April 1,121\n",
+          StandardOpenOption.APPEND);
+      boolean malformed = tail.poll() == 1 && tail.getRejected() == 1 && analyzer.size() == 3
+          && tail.getOffset() == Files.size(file) && tail.poll() == 0 && analyzer.size() == 3;
+      return first && second && idle && incomplete && malformed;
+    } catch (IOException e) {
+      return false;
+    } finally {
+      if (file != null) {
+        file.toFile().delete();
+      }
+    }
+  }
+
+  /**
+   * Tests loading a year range of a csv file through its sparse index, including appended lines
+   * and a saved index.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testLakeFileIndex() {
+    Path file = null;
+    Path sidecar = null;
+    try {
+      file = Files.createTempFile("lake", ".csv");
+      sidecar = LakeFileIndex.sidecarOf(file);
+      String header = "Winter,Freeze-Over Date,Thaw Date,Days of Ice Cover\n";
+      String[] lines = new String[100];
+      for (int year = 1900; year <= 1999; year++) {
+        lines[year - 1900] = year + "-" + String.format("%02d", (year + 1) % 100)
+            + ",\"December 1\",\"April 1\"," + (year % 100) + "\n";
+      }
+      StringBuilder csv = new StringBuilder(header);
+      for (int i = lines.length - 1; i >= 0; i--) {
+        csv.append(lines[i]);
+      }
+      Files.writeString(file, csv.toString());
+
+      LakeFileIndex index = LakeFileIndex.build(file, 8);
+      LakeIceAnalyzer range = index.loadRange(1950, 1959);
+      boolean loaded = index.size() == 13 && range.size() == 10
+          && range.get(0).getYear() == 1950 && range.get(9).getDaysOfIceCover() == 59;
+
+      // an appended correction is found after the saved index is reloaded, and is merged into its
+      // winter as a full load would
+      index.save(sidecar);
+      String correction = "1955-56,December 3,April 9,120\n";
+      Files.writeString(file, correction, StandardOpenOption.APPEND);
+      LakeFileIndex reloaded = LakeFileIndex.load(file, sidecar);
+      LakeIceAnalyzer updated = reloaded.loadRange(1955, 1955);
+      LakeIceAnalyzer full = new LakeIceAnalyzer(LakeRecordReader.getLakeRecords(file.toString()));
+      boolean appended = reloaded.getIndexedLength() == Files.size(file) && updated.size() == 1
+          && updated.get(0).getDaysOfIceCover() == 175
+          && updated.toString().equals(full.filterByYear(1955, 1955).toString());
+
+      // a file rewritten to the same length in a different order is indexed again
+      reloaded.save(sidecar);
+      csv = new StringBuilder(header);
+      for (String line : lines) {
+        csv.append(line).append(line.startsWith("1955") ? correction : "");
+      }
+      Files.writeString(file, csv.toString());
+      LakeIceAnalyzer rewritten = LakeFileIndex.load(file, sidecar).loadRange(1950, 1959);
+      full = new LakeIceAnalyzer(LakeRecordReader.getLakeRecords(file.toString()));
+
+      // a saved index with a negative stride count is rebuilt instead of failing the load
+      LakeFileIndex.build(file, 8).save(sidecar);
+      try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.WRITE)) {
+        channel.write(ByteBuffer.allocate(4).putInt(0, -1), 36);
+      }
+      LakeFileIndex repaired = LakeFileIndex.load(file, sidecar);
+      boolean corrupt = repaired.size() == LakeFileIndex.build(file).size()
+          && repaired.getIndexedLength() == Files.size(file)
+          && repaired.loadRange(1950, 1959).toString().equals(rewritten.toString());
+
+      return loaded && appended && corrupt && rewritten.size() == 10
+          && rewritten.toString().equals(full.filterByYear(1950, 1959).toString());
+    } catch (IOException e) {
+      return false;
+    } finally {
+      if (file != null) {
+        file.toFile().delete();
+        sidecar.toFile().delete();
+      }
+    }
+  }
+
+  /**
+   * Tests the record batch pipeline against loading, cleaning and merging a whole list.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testRecordPipeline() {
+    Path file = null;
+    try {
+      file = Files.createTempFile("lake", ".csv");
+      Files.writeString(file, "Winter,Freeze-Over Date,Thaw Date,Days of Ice Cover\n"
+          + "1903-04,December 10,April 1,0\n1902-03,January 20,March 30,69\n"
+          + "1902-03,December 2,January 5,34\n1901-02,December 1,\"\",5\n"
+          + "1900-01,November 30,April 5,126\n");
+
+      ArrayList<IceDataEntry> records = LakeRecordReader.getLakeRecords(file.toString());
+      LakeIceAnalyzer expected = new LakeIceAnalyzer(records);
+      expected.removeIncompleteRecords();
+      expected.updateDurations();
+      expected.mergeWinters();
+
+      // batches of two split the 1902-03 season across a batch boundary
+      RecordBatchPublisher publisher =
+          new RecordBatchPublisher(file, 2, 1, ForkJoinPool.commonPool());
+      RecordBatchProcessor cleaning = RecordBatchProcessor.cleaning();
+      RecordBatchProcessor merging = RecordBatchProcessor.seasonMerging();
+      AnalyzerSubscriber subscriber = new AnalyzerSubscriber(true);
+      publisher.subscribe(cleaning);
+      cleaning.subscribe(merging);
+      merging.subscribe(subscriber);
+      publisher.start();
+      LakeIceAnalyzer built = subscriber.getResult().get(10, TimeUnit.SECONDS);
+
+      boolean same = built.size() == expected.size() && built.size() == 3;
+      for (int i = 0; same && i < built.size(); i++) {
+        same = built.get(i).equals(expected.get(i));
+      }
+
+      RecordBatchPublisher again = new RecordBatchPublisher(file);
+      AggregateSubscriber aggregates = new AggregateSubscriber();
+      again.subscribe(aggregates);
+      again.start();
+      RangeSummary summary = aggregates.getResult().get(10, TimeUnit.SECONDS);
+
+      // a stage that throws must fail its subscribers rather than leave them waiting
+      RecordBatchPublisher failing = new RecordBatchPublisher(file);
+      RecordBatchProcessor broken = new RecordBatchProcessor(1) {
+        @Override
+        protected List<IceDataEntry> process(List<IceDataEntry> batch) {
+          throw new IllegalStateException("ERROR: broken stage");
+        }
+      };
+      AggregateSubscriber stranded = new AggregateSubscriber();
+      failing.subscribe(broken);
+      broken.subscribe(stranded);
+      failing.start();
+      boolean failed = false;
+      try {
+        stranded.getResult().get(10, TimeUnit.SECONDS);
+      } catch (ExecutionException e) {
+        failed = e.getCause() instanceof IllegalStateException;
+      }
+
+      return same && failed && summary.getCount() == 5 && summary.getYear1() == 1900
+          && summary.getYear2() == 1903 && summary.getMaxDays() == 126
+          && summary.getEarliestFreeze().equals("November 30")
+          && aggregates.getDurationHistogram().count() == 5;
+    } catch (Exception e) {
+      return false;
+    } finally {
+      if (file != null) {
+        file.toFile().delete();
+      }
+    }
+  }
+
+  /**
+   * Tests classifying the rows of a csv file, including the reject sample across chunks.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testValidatingReader() {
+    Path file = null;
+    try {
+      file = Files.createTempFile("lake", ".csv");
+      StringBuilder csv =
+          new StringBuilder("Winter,Freeze-Over Date,Thaw Date,Days of Ice Cover\n");
+      csv.append("1910-11,December 1,March 1,90\n"); // valid, 1911 is not a leap year
+      csv.append("1911-12,December 1,March 1,91\n"); // valid, 1912 is a leap year
+      csv.append("1909-10,December 1,\"--\",\n"); // valid, missing thaw and duration
+      csv.append("1908-09,December 1,March 1\n");
+      csv.append("19x7-08,December 1,March 1,90\n");
+      csv.append("1906-07,Decembr 1,March 1,90\n");
+      csv.append("1905-06,December 1,March 1,ninety\n");
+      csv.append("1904-05,December 1,March 1,-3\n");
+      csv.append("1903-04,December 1,March 1,900\n");
+      csv.append("1902-03,December 1,March 1,80\n");
+      csv.append("1900-01,December 1,February 29,90\n"); // 1901 is not a leap year
+      // enough valid rows to split the file into chunks, then one more reject
+      for (int i = 0; i < 10000; i++) {
+        csv.append("1800-01,December 1,December 11,10\n");
+      }
+      csv.append("1799-1800,December 1,March 1,1\r\n");
+      Files.writeString(file, csv.toString());
+
+      ValidationReport report = ValidatingLakeReader.read(file, 5);
+      ArrayList<ValidationReport.Reject> sample = report.getRejectSample();
+      boolean counts = report.getCount(ValidatingLakeReader.RowStatus.VALID) == 10003
+          && report.getCount(ValidatingLakeReader.RowStatus.BAD_COLUMN_COUNT) == 1
+          && report.getCount(ValidatingLakeReader.RowStatus.BAD_WINTER) == 1
+          && report.getCount(ValidatingLakeReader.RowStatus.BAD_DATE) == 2
+          && report.getCount(ValidatingLakeReader.RowStatus.BAD_DURATION) == 1
+          && report.getCount(ValidatingLakeReader.RowStatus.NEGATIVE_DURATION) == 1
+          && report.getCount(ValidatingLakeReader.RowStatus.IMPLAUSIBLE_DURATION) == 1
+          && report.getCount(ValidatingLakeReader.RowStatus.INCONSISTENT_DURATION) == 2
+          && report.getRejectCount() == 9;
+      boolean sampled = sample.size() == 5 && sample.get(0).getLine() == 5
+          && sample.get(4).getStatus() == ValidatingLakeReader.RowStatus.NEGATIVE_DURATION;
+
+      ValidationReport all = ValidatingLakeReader.read(file, 10);
+      ValidationReport.Reject leap = all.getRejectSample().get(7);
+      ValidationReport.Reject last = all.getRejectSample().get(8);
+
+      // the duplicate rows are merged into one winter and the incomplete row is dropped
+      LakeIceAnalyzer records = all.toAnalyzer();
+      return counts && sampled && last.getLine() == 10013
+          && leap.getStatus() == ValidatingLakeReader.RowStatus.BAD_DATE
+          && leap.getText().startsWith("1900-01")
+          && last.getText().equals("1799-1800,December 1,March 1,1") && records.size() == 3
+          && records.countByYear(1800, 1800) == 1 && records.countByYear(1909, 1909) == 0
+          && records.getTotalFreezeDuration(1910, 1911) == 181;
+    } catch (IOException e) {
+      return false;
+    } finally {
+      if (file != null) {
+        file.toFile().delete();
+      }
+    }
+  }
+
+  /**
+   * Tests merging overlapping sources with exact duplicates and conflicts under each policy.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testLakeMerge() {
+    LakeIceAnalyzer a = new LakeIceAnalyzer();
+    a.add(new IceDataEntry("1900-01", "December 5", "March 20", 105));
+    a.add(new IceDataEntry("1901-02", "December 10", null, IceDataEntry.MISSING));
+    a.add(new IceDataEntry("1903-04", "December 1", "April 1", 121));
+    LakeIceAnalyzer b = new LakeIceAnalyzer();
+    b.add(new IceDataEntry("1899-00", "December 1", "March 1", 90));
+    b.add(new IceDataEntry("1900-01", "December 5", "March 20", 105));
+    b.add(new IceDataEntry("1901-02", "December 8", "March 30", 112));
+    LakeIceAnalyzer c = new LakeIceAnalyzer();
+    c.add(new IceDataEntry("1902-03", "December 2", "March 2", 90));
+    c.add(new IceDataEntry("1901-02", "December 9", "April 2", 114));
+
+    LakeMerge first = new LakeMerge(ConflictPolicy.PREFER_FIRST);
+    LakeIceAnalyzer merged = first.merge(a, b, c);
+    boolean chronological = merged.size() == 5 && merged.get(0).getYear() == 1899
+        && merged.get(4).getYear() == 1903 && merged.get(1).getDaysOfIceCover() == 105
+        && merged.get(2).getThawDate() == null && first.getDuplicateCount() == 1
+        && first.getConflictCount() == 2 && merged.getTotalFreezeDuration(1900, 1900) == 105;
+
+    LakeIceAnalyzer complete = new LakeMerge(ConflictPolicy.PREFER_COMPLETE).merge(a, b, c);
+    LakeIceAnalyzer widest = new LakeMerge(ConflictPolicy.WIDEST_SPAN).merge(a, b, c);
+    // the widened span runs from December 8 to April 2 of a non-leap winter, 115 days
+    IceDataEntry span = widest.get(2);
+    return chronological && complete.get(2).getDaysOfIceCover() == 112
+        && span.getFreezeDate().equals("December 8") && span.getThawDate().equals("April 2")
+        && span.getDaysOfIceCover() == 115 && a.get(1).getThawDate() == null;
+  }
+
+  /**
+   * Tests splicing lists together and splitting a list by year.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testSpliceAndSplit() {
+    LakeIceAnalyzer early = new LakeIceAnalyzer();
+    LakeIceAnalyzer late = new LakeIceAnalyzer();
+    for (int year = 1900; year < 1920; year++) {
+      (year < 1910 ? early : late).add(new IceDataEntry(year + "-" + (year + 1) % 100,
+          "December 1", "March 1", year - 1800));
+    }
+    early.getMedianFreezeDuration();
+    late.getMedianFreezeDuration();
+    early.addAll(late);
+    boolean joined = early.size() == 20 && late.isEmpty() && late.getHead() == null
+        && early.getTail().getLakeRecord().getYear() == 1919
+        && early.getTail().getPrev().getNext() == early.getTail()
+        && early.getMedianFreezeDuration() == 109 && early.countByYear(1905, 1914) == 10;
+
+    LakeIceAnalyzer rest = early.splitAt(1915);
+    boolean split = early.size() == 15 && rest.size() == 5 && early.getTail().getNext() == null
+        && rest.getHead().getPrev() == null && rest.get(0).getYear() == 1915
+        && early.getTotalFreezeDuration(1900, 2000) == 1500 + 105 && rest.countByYear(0, 3000) == 5;
+
+    LakeIceAnalyzer all = LakeIceAnalyzer.concat(early, rest);
+    LakeIceAnalyzer none = all.splitAt(3000);
+    LakeIceAnalyzer whole = all.splitAt(0);
+    return joined && split && none.isEmpty() && all.isEmpty() && all.getTail() == null
+        && whole.size() == 20 && whole.get(19).getYear() == 1919;
+  }
+
+  /**
+   * Tests routing records to decade shards, including concurrent adds, and combining shard
+   * statistics.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testShardedAnalyzer() {
+    ShardedLakeIceAnalyzer sharded = new ShardedLakeIceAnalyzer();
+    LakeIceAnalyzer plain = new LakeIceAnalyzer();
+    for (int year = 1850; year < 2000; year++) {
+      IceDataEntry record = new IceDataEntry(year + "-" + String.format("%02d", (year + 1) % 100),
+          "December " + (1 + year % 20), "March " + (1 + year % 25), 60 + year % 50);
+      plain.add(record);
+    }
+
+    // each thread adds a different part of the history
+    Thread[] threads = new Thread[3];
+    for (int t = 0; t < threads.length; t++) {
+      int part = t;
+      threads[t] = new Thread(() -> {
+        for (int i = part * 50; i < (part + 1) * 50; i++) {
+          sharded.add(plain.get(i));
+        }
+      });
+      threads[t].start();
+    }
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      return false;
+    }
+
+    RangeSummary expected = plain.summarizeRange(1873, 1941);
+    RangeSummary actual = sharded.summarizeRange(1873, 1941);
+    boolean stats = sharded.size() == 150 && sharded.getShardCount() == 15
+        && actual.toString().equals(expected.toString())
+        && sharded.getTotalFreezeDuration(1873, 1941) == plain.getTotalFreezeDuration(1873, 1941)
+        && sharded.countByYear(1900, 1909) == 10
+        && sharded.getDurationHistogram().percentile(50) == plain.getMedianFreezeDuration()
+        && Math.abs(sharded.getTrend().getSlope() - plain.getTrend().getSlope()) < 1e-9;
+
+    LakeIceAnalyzer filtered = sharded.filterByYear(1895, 1904);
+    boolean routed = filtered.size() == 10 && filtered.get(0).getYear() == 1895
+        && sharded.get(0).getYear() == 1850 && sharded.remove(plain.get(60))
+        && !sharded.remove(plain.get(60)) && sharded.countByYear(1910, 1910) == 0
+        && sharded.toAnalyzer().size() == 149;
+
+    // clearing while another thread adds never leaves a counted record that cannot be read
+    Thread adder = new Thread(() -> {
+      for (int i = 0; i < 5000; i++) {
+        sharded.add(plain.get(i % 150));
+      }
+    });
+    adder.start();
+    while (adder.isAlive()) {
+      sharded.clear();
+    }
+    try {
+      adder.join();
+    } catch (InterruptedException e) {
+      return false;
+    }
+    boolean cleared = sharded.size() == sharded.toAnalyzer().size();
+    return stats && routed && cleared;
+  }
+
+  /**
+   * Tests recovering live edits from the write-ahead log, including concurrent group commits,
+   * compaction and a torn entry at the end of the log.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testWriteAheadLog() {
+    Path dir = null;
+    try {
+      dir = Files.createTempDirectory("lake");
+      IceDataEntry first = new IceDataEntry("1900-01", "December 5", "March 20", 105);
+      IceDataEntry second = new IceDataEntry("1901-02", "December 1", null, -1);
+      IceDataEntry corrected = new IceDataEntry("1901-02", "December 1", "April 1", 121);
+      IceDataEntry third = new IceDataEntry("1902-03", "December 9", "April 2", 114);
+      WriteAheadLog wal = new WriteAheadLog(dir, 0);
+      wal.add(first);
+      wal.add(second);
+      wal.add(third);
+      boolean edits = wal.remove(first) && !wal.remove(first) && wal.replace(second, corrected)
+          && wal.getLogEntryCount() == 5 && wal.getGroupCommitCount() == 5;
+      wal.close();
+
+      // reopening replays the log
+      wal = new WriteAheadLog(dir, 0);
+      LakeIceAnalyzer expectedList = new LakeIceAnalyzer();
+      expectedList.add(corrected);
+      expectedList.add(third);
+      boolean replayed = wal.getAnalyzer().toString().equals(expectedList.toString())
+          && wal.getLogEntryCount() == 5;
+
+      // concurrent edits share batches
+      WriteAheadLog shared = wal;
+      Thread[] threads = new Thread[8];
+      boolean[] failed = new boolean[1];
+      for (int t = 0; t < threads.length; t++) {
+        int part = t;
+        threads[t] = new Thread(() -> {
+          try {
+            for (int i = 0; i < 25; i++) {
+              shared.add(new IceDataEntry((1910 + part * 25 + i) + "-xx", "December 1",
+                  "April 1", 121));
+            }
+          } catch (IOException e) {
+            failed[0] = true;
+          }
+        });
+        threads[t].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      boolean concurrent = !failed[0] && wal.getAnalyzer().size() == 202
+          && wal.getGroupCommitCount() <= 200 && wal.getLogEntryCount() == 205;
+
+      // compaction moves everything into the snapshot
+      wal.compact();
+      wal.add(first);
+      boolean compacted = wal.getLogEntryCount() == 1;
+      String expected = wal.getAnalyzer().toString();
+      wal.close();
+
+      // a torn entry at the end of the log is dropped
+      Files.write(dir.resolve(WriteAheadLog.LOG_FILE), new byte[] {0, 0, 0, 40, 1, 2},
+          StandardOpenOption.APPEND);
+      wal = new WriteAheadLog(dir, 10);
+      boolean recovered = wal.getAnalyzer().toString().equals(expected)
+          && wal.getLogEntryCount() == 1;
+
+      // the threshold compacts automatically
+      for (int i = 0; i < 15; i++) {
+        wal.remove(wal.getAnalyzer().get(0));
+      }
+      boolean automatic = wal.getLogEntryCount() < 10 && wal.getAnalyzer().size() == 188;
+      expected = wal.getAnalyzer().toString();
+      wal.close();
+      wal = new WriteAheadLog(dir, 10);
+      boolean reopened = wal.getAnalyzer().toString().equals(expected);
+      wal.close();
+
+      // a failed automatic compaction does not fail the durable edits that triggered it
+      Path blocker = dir.resolve(WriteAheadLog.SNAPSHOT_FILE + ".tmp");
+      Files.createDirectories(blocker);
+      Files.writeString(blocker.resolve("keep"), "x");
+      wal = new WriteAheadLog(dir, 1);
+      int logged = wal.getLogEntryCount();
+      wal.add(first);
+      wal.add(first);
+      boolean retried = wal.getLogEntryCount() == logged + 2;
+      blocker.resolve("keep").toFile().delete();
+      blocker.toFile().delete();
+      wal.add(first);
+      retried = retried && wal.getLogEntryCount() == 0 && wal.getAnalyzer().size() == 191;
+      wal.close();
+      return edits && replayed && concurrent && compacted && recovered && automatic && reopened
+          && retried;
+    } catch (IOException | InterruptedException e) {
+      return false;
+    } finally {
+      if (dir != null) {
+        for (File file : dir.toFile().listFiles()) {
+          file.delete();
+        }
+        dir.toFile().delete();
+      }
+    }
+  }
+
+  /**
+   * Tests sorting the linked list in place by several keys, including stability, missing values
+   * and restoring the chronological order.
+   *
+   * @return true if all cases pass, false otherwise.
+   */
+  public static boolean testSortBy() {
+    LakeIceAnalyzer analyzer = new LakeIceAnalyzer();
+    for (int year = 1850; year < 2000; year++) {
+      String freeze = year % 17 == 0 ? null : "December " + (1 + year % 20);
+      int days = year % 23 == 0 ? IceDataEntry.MISSING : 60 + year % 40;
+      analyzer.add(new IceDataEntry(year + "-" + String.format("%02d", (year + 1) % 100), freeze,
+          "March " + (1 + year % 25), days));
+    }
+    String chronological = analyzer.toString();
+    int median = analyzer.getMedianFreezeDuration();
+
+    // durations ascending, ties in year order, missing first
+    analyzer.sortByDuration(false);
+    boolean ascending = true;
+    IceDataEntry prev = null;
+    for (IceDataEntry rec : analyzer) {
+      if (prev != null && (prev.getDaysOfIceCover() > rec.getDaysOfIceCover()
+          || (prev.getDaysOfIceCover() == rec.getDaysOfIceCover()
+          && prev.getYear() > rec.getYear()))) {
+        ascending = false;
+      }
+      prev = rec;
+    }
+    ascending = ascending && analyzer.get(0).getDaysOfIceCover() == IceDataEntry.MISSING
+        && analyzer.get(149).getDaysOfIceCover() == 99 && analyzer.size() == 150;
+
+    // the backward links agree with the forward ones
+    int count = 0;
+    DoubleNode cur = analyzer.getTail();
+    for (; cur != null && cur.getPrev() != null; cur = cur.getPrev()) {
+      count++;
+      if (cur.getPrev().getNext() != cur) {
+        return false;
+      }
+    }
+    boolean links = cur == analyzer.getHead() && count == 149;
+
+    // order-independent and positional queries still agree
+    boolean queries = analyzer.getMedianFreezeDuration() == median
+        && analyzer.countByYear(1900, 1909) == 10
+        && analyzer.filterByYear(1900, 1901).size() == 2;
+
+    analyzer.sortByDuration(true);
+    boolean descending = analyzer.get(0).getDaysOfIceCover() == 99
+        && analyzer.get(0).getYear() == 1879
+        && analyzer.get(149).getDaysOfIceCover() == IceDataEntry.MISSING;
+
+    analyzer.sortByFreezeDay(false);
+    boolean freeze = analyzer.get(0).getFreezeDate() == null
+        && analyzer.get(9).getFreezeDate().equals("December 1")
+        && analyzer.get(149).getFreezeDate().equals("December 20");
+
+    analyzer.sortByThawDay(true);
+    boolean thaw = analyzer.get(0).getThawDate().equals("March 25")
+        && analyzer.get(149).getThawDate().equals("March 1");
+
+    analyzer.sortBy((a, b) -> a.getWinter().compareTo(b.getWinter()));
+    boolean winter = analyzer.get(0).getYear() == 1850;
+    analyzer.restoreChronological();
+    return ascending && links && queries && descending && freeze && thaw && winter
+        && analyzer.toString().equals(chronological);
+  }
+
   /**
    * Main Method to Launch the tester methods.
    * 
@@ -311,12 +1453,52 @@ public class AnalyzerTester {
     System.out.println("testGetLatestThaw(): " + (testGetLatestThaw() ? "PASSED" : "FAILED"));
     System.out.println("testFilterByYear(): " + (testFilterByYear() ? "PASSED" : "FAILED"));
     System.out.println("testFilterByDuration(): " + (testFilterByDuration() ? "PASSED" : "FAILED"));
+    System.out.println(
+        "testYearRangeStatistics(): " + (testYearRangeStatistics() ? "PASSED" : "FAILED"));
+    System.out.println(
+        "testYearRangeExtremes(): " + (testYearRangeExtremes() ? "PASSED" : "FAILED"));
+    System.out.println("testSummarizeRanges(): " + (testSummarizeRanges() ? "PASSED" : "FAILED"));
+    System.out.println("testTopK(): " + (testTopK() ? "PASSED" : "FAILED"));
+    System.out.println(
+        "testFilterBySeasonWindow(): " + (testFilterBySeasonWindow() ? "PASSED" : "FAILED"));
+    System.out.println("testQueryCache(): " + (testQueryCache() ? "PASSED" : "FAILED"));
+    System.out.println("testLakeRegistry(): " + (testLakeRegistry() ? "PASSED" : "FAILED"));
+    System.out.println("testLakeJoin(): " + (testLakeJoin() ? "PASSED" : "FAILED"));
+    System.out.println("testRollingStats(): " + (testRollingStats() ? "PASSED" : "FAILED"));
+    System.out.println(
+        "testDurationPercentiles(): " + (testDurationPercentiles() ? "PASSED" : "FAILED"));
+    System.out.println("testTrend(): " + (testTrend() ? "PASSED" : "FAILED"));
+    System.out.println("testAnomalyDetector(): " + (testAnomalyDetector() ? "PASSED" : "FAILED"));
+    System.out.println("testRollups(): " + (testRollups() ? "PASSED" : "FAILED"));
+    System.out.println(
+        "testOffHeapRecordStore(): " + (testOffHeapRecordStore() ? "PASSED" : "FAILED"));
+    System.out.println(
+        "testMappedLakeArchive(): " + (testMappedLakeArchive() ? "PASSED" : "FAILED"));
+    System.out.println(
+        "testCompressedArchive(): " + (testCompressedArchive() ? "PASSED" : "FAILED"));
+    System.out.println("testLakeTailReader(): " + (testLakeTailReader() ? "PASSED" : "FAILED"));
+    System.out.println("testLakeFileIndex(): " + (testLakeFileIndex() ? "PASSED" : "FAILED"));
+    System.out.println("testRecordPipeline(): " + (testRecordPipeline() ? "PASSED" : "FAILED"));
+    System.out.println("testValidatingReader(): " + (testValidatingReader() ? "PASSED" : "FAILED"));
+    System.out.println("testLakeMerge(): " + (testLakeMerge() ? "PASSED" : "FAILED"));
+    System.out.println("testSpliceAndSplit(): " + (testSpliceAndSplit() ? "PASSED" : "FAILED"));
+    System.out.println("testShardedAnalyzer(): " + (testShardedAnalyzer() ? "PASSED" : "FAILED"));
+    System.out.println("testWriteAheadLog(): " + (testWriteAheadLog() ? "PASSED" : "FAILED"));
+    System.out.println("testSortBy(): " + (testSortBy() ? "PASSED" : "FAILED"));
 
     boolean allTestsPassed =
         testAdd() && testRemove() && testRemoveOnly() && testRemoveDoesNotExist() && testIterators()
             && testMergeWinters() && testCleanData() && testAverageFreezeDuration()
             && testMaxFreezeDuration() && testMinFreezeDuration() && testGetEarliestFreeze()
-            && testGetLatestThaw() && testFilterByYear() && testFilterByDuration();
+            && testGetLatestThaw() && testFilterByYear() && testFilterByDuration()
+            && testYearRangeStatistics() && testYearRangeExtremes() && testSummarizeRanges()
+            && testTopK() && testFilterBySeasonWindow() && testQueryCache() && testLakeRegistry()
+            && testLakeJoin() && testRollingStats() && testDurationPercentiles() && testTrend()
+            && testAnomalyDetector() && testRollups() && testOffHeapRecordStore()
+            && testMappedLakeArchive() && testCompressedArchive() && testLakeTailReader()
+            && testLakeFileIndex() && testRecordPipeline() && testValidatingReader()
+            && testLakeMerge() && testSpliceAndSplit() && testShardedAnalyzer()
+            && testWriteAheadLog() && testSortBy();
     System.out.println("ALL TESTS: " + (allTestsPassed ? "PASSED" : "FAILED"));
   }
 }
@@ -0,0 +1,283 @@
+import java.util.ArrayList;
+
+/**
+ * A streaming detector that checks each newly added record against the records before it, in O(1)
+ * time per record, and tells its listeners about anomalous durations and freeze dates.
+ *
+ * Each metric keeps Welford's running mean and variance over all history, an optional rolling
+ * window of the most recent values, and a per-day histogram for the quartiles. A value is flagged
+ * if its z-score against the history (or window, if one is set) exceeds the z threshold, or if it
+ * lies further than the IQR multiplier times the interquartile range outside the quartiles.
+ */
+public class AnomalyDetector {
+  /**
+   * Metric name for days of ice cover
+   */
+  public static final String DURATION = "duration";
+  /**
+   * Metric name for the freeze day of the season
+   */
+  public static final String FREEZE_DATE = "freezeDate";
+
+  /**
+   * Running statistics of one metric.
+   */
+  private static class Metric {
+    /**
+     * Number of values seen
+     */
+    private long count;
+    /**
+     * Running mean of all values
+     */
+    private double mean;
+    /**
+     * Running sum of squared differences from the mean (Welford's M2)
+     */
+    private double m2;
+    /**
+     * The most recent values, or null if no window is used
+     */
+    private final int[] window;
+    /**
+     * Number of values currently in the window
+     */
+    private int windowCount;
+    /**
+     * Position in the window that the next value overwrites
+     */
+    private int windowNext;
+    /**
+     * Sum of the values in the window
+     */
+    private long windowSum;
+    /**
+     * Sum of the squared values in the window
+     */
+    private long windowSumSquares;
+    /**
+     * Counts of every value seen, for the quartiles
+     */
+    private final DurationHistogram histogram = new DurationHistogram();
+
+    /**
+     * Creates empty statistics.
+     *
+     * @param windowLength the rolling window length, or 0 for none
+     */
+    private Metric(int windowLength) {
+      window = windowLength > 0 ? new int[windowLength] : null;
+    }
+
+    /**
+     * Adds a value to the statistics in O(1) time.
+     *
+     * @param value the value to add
+     */
+    private void add(int value) {
+      // Welford's update keeps the variance numerically stable
+      count++;
+      double delta = value - mean;
+      mean += delta / count;
+      m2 += delta * (value - mean);
+
+      if (window != null) {
+        if (windowCount == window.length) {
+          int old = window[windowNext];
+          windowSum -= old;
+          windowSumSquares -= (long) old * old;
+        } else {
+          windowCount++;
+        }
+        window[windowNext] = value;
+        windowNext = (windowNext + 1) % window.length;
+        windowSum += value;
+        windowSumSquares += (long) value * value;
+      }
+
+      histogram.add(value);
+    }
+
+    /**
+     * Computes the z-score of a value against the window if one is set, or all history otherwise.
+     *
+     * @param value the value to score
+     * @return the z-score, or 0 if the spread is zero
+     */
+    private double zScore(int value) {
+      double m;
+      double variance;
+      if (window != null) {
+        m = (double) windowSum / windowCount;
+        variance = (double) windowSumSquares / windowCount - m * m;
+      } else {
+        m = mean;
+        variance = m2 / count;
+      }
+      return variance <= 0 ? 0 : (value - m) / Math.sqrt(variance);
+    }
+
+    /**
+     * Checks whether a value lies outside the quartiles by more than the given multiple of the
+     * interquartile range.
+     *
+     * @param value      the value to check
+     * @param multiplier the IQR multiplier, e.g. 1.5
+     * @return true if the value is an IQR outlier
+     */
+    private boolean isIqrOutlier(int value, double multiplier) {
+      int q1 = histogram.percentile(25);
+      int q3 = histogram.percentile(75);
+      double fence = multiplier * (q3 - q1);
+      return value < q1 - fence || value > q3 + fence;
+    }
+  }
+
+  /**
+   * Values with an absolute z-score above this are flagged; 0 or less disables the check
+   */
+  private final double zThreshold;
+  /**
+   * Values beyond this many interquartile ranges outside the quartiles are flagged; 0 or less
+   * disables the check
+   */
+  private final double iqrMultiplier;
+  /**
+   * Number of values a metric needs before anything is flagged
+   */
+  private final int minHistory;
+  /**
+   * Statistics of the days of ice cover
+   */
+  private final Metric duration;
+  /**
+   * Statistics of the freeze day of the season
+   */
+  private final Metric freeze;
+  /**
+   * Listeners told about every anomaly
+   */
+  private final ArrayList<AnomalyListener> listeners = new ArrayList<>();
+
+  /**
+   * Creates a detector with no history.
+   *
+   * @param zThreshold    the absolute z-score above which a value is flagged, e.g. 3; 0 or less
+   *                      disables the z-score check
+   * @param iqrMultiplier the multiple of the interquartile range beyond the quartiles at which a
+   *                      value is flagged, e.g. 1.5; 0 or less disables the IQR check
+   * @param window        the number of recent values to compute z-scores against, or 0 to use
+   *                      all history
+   * @param minHistory    the number of values a metric needs before anything is flagged
+   * @throws IllegalArgumentException if window or minHistory is negative
+   */
+  public AnomalyDetector(double zThreshold, double iqrMultiplier, int window, int minHistory) {
+    if (window < 0 || minHistory < 0) {
+      throw new IllegalArgumentException("ERROR: window and minHistory must not be negative");
+    }
+    this.zThreshold = zThreshold;
+    this.iqrMultiplier = iqrMultiplier;
+    this.minHistory = Math.max(minHistory, 1);
+    this.duration = new Metric(window);
+    this.freeze = new Metric(window);
+  }
+
+  /**
+   * Registers a listener to be told about every anomaly from now on.
+   *
+   * @param listener the listener to add
+   */
+  public void addListener(AnomalyListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Removes a previously registered listener.
+   *
+   * @param listener the listener to remove
+   * @return true if the listener was registered
+   */
+  public boolean removeListener(AnomalyListener listener) {
+    return listeners.remove(listener);
+  }
+
+  /**
+   * Adds a record to the history without checking it, e.g. to load existing records.
+   *
+   * @param record the record to add
+   */
+  public void prime(IceDataEntry record) {
+    int days = record.getDaysOfIceCover();
+    int freezeDay = DateUtil.dayOfSeason(record.getFreezeDate());
+    if (days != IceDataEntry.MISSING) {
+      duration.add(days);
+    }
+    if (freezeDay != -1) {
+      freeze.add(freezeDay);
+    }
+  }
+
+  /**
+   * Checks a new record against the history before it, tells the listeners about any anomalous
+   * metric, and then adds the record to the history.
+   *
+   * @param record the newly added record
+   * @return true if any metric of the record was anomalous
+   */
+  public boolean observe(IceDataEntry record) {
+    int days = record.getDaysOfIceCover();
+    int freezeDay = DateUtil.dayOfSeason(record.getFreezeDate());
+    boolean anomalous = false;
+    if (days != IceDataEntry.MISSING) {
+      anomalous |= check(record, DURATION, duration, days);
+    }
+    if (freezeDay != -1) {
+      anomalous |= check(record, FREEZE_DATE, freeze, freezeDay);
+    }
+    prime(record);
+    return anomalous;
+  }
+
+  /**
+   * Checks one metric of a record and notifies the listeners if it is anomalous.
+   *
+   * @param record the record being checked
+   * @param name   the name of the metric
+   * @param metric the history of the metric
+   * @param value  the record's value of the metric
+   * @return true if the value is anomalous
+   */
+  private boolean check(IceDataEntry record, String name, Metric metric, int value) {
+    if (metric.count < minHistory) {
+      return false;
+    }
+
+    double z = metric.zScore(value);
+    boolean flagged = (zThreshold > 0 && Math.abs(z) > zThreshold)
+        || (iqrMultiplier > 0 && metric.isIqrOutlier(value, iqrMultiplier));
+    if (flagged) {
+      for (AnomalyListener listener : listeners) {
+        listener.anomalyDetected(record, name, value, z);
+      }
+    }
+    return flagged;
+  }
+
+  /**
+   * Gets the running mean of the days of ice cover over all history.
+   *
+   * @return the mean, or 0 if no duration has been seen
+   */
+  public double getMeanDuration() {
+    return duration.mean;
+  }
+
+  /**
+   * Gets the running population standard deviation of the days of ice cover over all history.
+   *
+   * @return the standard deviation, or 0 if no duration has been seen
+   */
+  public double getDurationStdDev() {
+    return duration.count == 0 ? 0 : Math.sqrt(duration.m2 / duration.count);
+  }
+}
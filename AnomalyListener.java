@@ -0,0 +1,16 @@
+/**
+ * A callback interface for being told when an AnomalyDetector flags a newly added record.
+ */
+public interface AnomalyListener {
+
+  /**
+   * Called once for each metric of a record that is anomalous relative to the history before it.
+   *
+   * @param record the record that was added
+   * @param metric the metric that is anomalous, AnomalyDetector.DURATION or
+   *               AnomalyDetector.FREEZE_DATE
+   * @param value  the record's value of the metric (days of ice cover, or freeze day of the season)
+   * @param zScore how many standard deviations the value lies from the historical mean
+   */
+  void anomalyDetected(IceDataEntry record, String metric, int value, double zScore);
+}
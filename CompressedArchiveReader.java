@@ -0,0 +1,149 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streams the blocks of a compressed lake archive written by CompressedArchiveWriter. Blocks are
+ * read one at a time, and the queries use each block's header to skip blocks that cannot match
+ * and to answer totals without decoding the columns. The columns of a skipped block are passed
+ * over rather than read, so over a file they cost a seek instead of I/O.
+ */
+public class CompressedArchiveReader implements AutoCloseable {
+  /**
+   * The archive being read
+   */
+  private final DataInputStream in;
+  /**
+   * Whether the end marker has been read
+   */
+  private boolean finished;
+
+  /**
+   * Opens an archive on the given stream.
+   *
+   * @param in the stream to read from; closed by close()
+   * @throws IOException if the stream cannot be read or is not a compressed archive
+   */
+  public CompressedArchiveReader(InputStream in) throws IOException {
+    this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+    if (this.in.readInt() != CompressedArchiveWriter.MAGIC) {
+      throw new IOException("Not a compressed lake archive");
+    }
+  }
+
+  /**
+   * Reads the next block without decoding its columns.
+   *
+   * @return the next block, or null once every block has been read
+   * @throws IOException if the stream cannot be read or ends early
+   */
+  public CompressedBlock nextBlock() throws IOException {
+    CompressedBlock header = nextHeader();
+    return header == null ? null : header.readPayload(in);
+  }
+
+  /**
+   * Reads the header of the next block. Its columns must then be read with readPayload() or
+   * passed over with skipPayload() before the next block.
+   *
+   * @return the next block's header, or null once every block has been read
+   * @throws IOException if the stream cannot be read or ends early
+   */
+  private CompressedBlock nextHeader() throws IOException {
+    if (finished) {
+      return null;
+    }
+    CompressedBlock header = CompressedBlock.readHeader(in);
+    finished = header == null;
+    return header;
+  }
+
+  /**
+   * Decodes the remaining records whose winter starts between year1 and year2, inclusive, into a
+   * new list. Blocks outside the range are skipped without reading their columns.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return a new list holding the matching records in archive order
+   * @throws IOException if the stream cannot be read
+   */
+  public LakeIceAnalyzer readRange(int year1, int year2) throws IOException {
+    LakeIceAnalyzer result = new LakeIceAnalyzer();
+    for (CompressedBlock header = nextHeader(); header != null; header = nextHeader()) {
+      if (!header.overlapsYears(year1, year2)) {
+        header.skipPayload(in);
+        continue;
+      }
+      for (IceDataEntry record : header.readPayload(in).decode()) {
+        if (record.getYear() >= year1 && record.getYear() <= year2) {
+          result.add(record);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Decodes every remaining record into a new list.
+   *
+   * @return a new list holding the records in archive order
+   * @throws IOException if the stream cannot be read
+   */
+  public LakeIceAnalyzer readAll() throws IOException {
+    return readRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Decodes the remaining records whose days of ice cover are between min and max, inclusive.
+   * Blocks whose duration range misses the bounds are skipped without reading their columns.
+   *
+   * @param min the smallest duration
+   * @param max the largest duration
+   * @return a new list holding the matching records in archive order
+   * @throws IOException if the stream cannot be read
+   */
+  public LakeIceAnalyzer readDurations(int min, int max) throws IOException {
+    LakeIceAnalyzer result = new LakeIceAnalyzer();
+    for (CompressedBlock header = nextHeader(); header != null; header = nextHeader()) {
+      if (!header.overlapsDurations(min, max)) {
+        header.skipPayload(in);
+        continue;
+      }
+      for (IceDataEntry record : header.readPayload(in).decode()) {
+        int days = record.getDaysOfIceCover();
+        if (days >= min && days <= max) {
+          result.add(record);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Finds the average known days of ice cover over the remaining blocks from their headers alone.
+   *
+   * @return the average days of ice cover, or 0 if no duration is known
+   * @throws IOException if the stream cannot be read
+   */
+  public float getAverageFreezeDuration() throws IOException {
+    long sum = 0;
+    long count = 0;
+    for (CompressedBlock header = nextHeader(); header != null; header = nextHeader()) {
+      sum += header.getTotalFreezeDuration();
+      count += header.getDurationCount();
+      header.skipPayload(in);
+    }
+    return count == 0 ? 0 : (float) sum / count;
+  }
+
+  /**
+   * Closes the stream.
+   *
+   * @throws IOException if the stream cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
@@ -0,0 +1,113 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+/**
+ * Streams records into a compressed lake archive one block at a time, so only the current block
+ * is ever held in memory. See CompressedBlock for the encoding of each block.
+ *
+ * The archive starts with a magic number, followed by the blocks and an end marker written by
+ * close().
+ */
+public class CompressedArchiveWriter implements AutoCloseable {
+  /**
+   * Identifies a compressed archive ("LIC1")
+   */
+  static final int MAGIC = 0x4C494331;
+  /**
+   * Default number of records per block
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+  /**
+   * The archive being written
+   */
+  private final DataOutputStream out;
+  /**
+   * Number of records per block
+   */
+  private final int blockSize;
+  /**
+   * Records of the block being filled
+   */
+  private final ArrayList<IceDataEntry> pending;
+
+  /**
+   * Starts an archive on the given stream with the default block size.
+   *
+   * @param out the stream to write to; closed by close()
+   * @throws IOException if the stream cannot be written
+   */
+  public CompressedArchiveWriter(OutputStream out) throws IOException {
+    this(out, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * Starts an archive on the given stream.
+   *
+   * @param out       the stream to write to; closed by close()
+   * @param blockSize the number of records per block
+   * @throws IOException              if the stream cannot be written
+   * @throws IllegalArgumentException if blockSize is not positive
+   */
+  public CompressedArchiveWriter(OutputStream out, int blockSize) throws IOException {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("ERROR: block size must be positive");
+    }
+    this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+    this.blockSize = blockSize;
+    this.pending = new ArrayList<>(blockSize);
+    this.out.writeInt(MAGIC);
+  }
+
+  /**
+   * Appends a record, writing out the current block once it is full.
+   *
+   * @param record the record to append
+   * @throws IOException if the stream cannot be written
+   */
+  public void add(IceDataEntry record) throws IOException {
+    pending.add(record);
+    if (pending.size() == blockSize) {
+      flushBlock();
+    }
+  }
+
+  /**
+   * Appends every record of the given source, in order.
+   *
+   * @param records the records to append, e.g. a LakeIceAnalyzer
+   * @throws IOException if the stream cannot be written
+   */
+  public void addAll(Iterable<IceDataEntry> records) throws IOException {
+    for (IceDataEntry record : records) {
+      add(record);
+    }
+  }
+
+  /**
+   * Encodes and writes the records of the current block, if any.
+   *
+   * @throws IOException if the stream cannot be written
+   */
+  private void flushBlock() throws IOException {
+    if (!pending.isEmpty()) {
+      CompressedBlock.encode(pending).writeTo(out);
+      pending.clear();
+    }
+  }
+
+  /**
+   * Writes the last partial block and the end marker, then closes the stream.
+   *
+   * @throws IOException if the stream cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    flushBlock();
+    out.writeInt(0);
+    out.close();
+  }
+}
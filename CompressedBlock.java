@@ -0,0 +1,539 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One block of a compressed lake archive: up to a few thousand records encoded column by column.
+ *
+ * Years are stored as zigzag deltas from the previous record, which for consecutive winters is a
+ * single bit each. Freeze and thaw days of the season and days of ice cover are bit-packed at the
+ * narrowest width that fits the block, with durations stored relative to the block minimum.
+ * Missing values are marked in one bitmap per column instead of being stored, and winters in the
+ * usual "1900-01" form are rebuilt from their year, so only unusual winters are stored as text.
+ *
+ * The block header keeps the year and duration ranges and the duration total, so readers can skip
+ * blocks outside a query or answer totals without decoding the columns. A date that is not a
+ * valid "Month day" string is stored as missing.
+ */
+public class CompressedBlock {
+  /**
+   * Number of records in the block
+   */
+  private final int count;
+  /**
+   * Year of the first record
+   */
+  private final int firstYear;
+  /**
+   * Smallest year in the block
+   */
+  private final int minYear;
+  /**
+   * Largest year in the block
+   */
+  private final int maxYear;
+  /**
+   * Smallest known days of ice cover, 0 if none is known
+   */
+  private final int minDays;
+  /**
+   * Largest known days of ice cover, -1 if none is known
+   */
+  private final int maxDays;
+  /**
+   * Total of the known days of ice cover
+   */
+  private final long sumDays;
+  /**
+   * Number of records with known days of ice cover
+   */
+  private final int daysCount;
+  /**
+   * Bit widths of the year delta, freeze, thaw and duration columns
+   */
+  private final byte[] widths;
+  /**
+   * The encoded columns, or null if only the header was read
+   */
+  private final byte[] payload;
+  /**
+   * Number of bytes of encoded columns
+   */
+  private final int encodedSize;
+
+  /**
+   * Creates a block from its header values and encoded columns.
+   */
+  private CompressedBlock(int count, int firstYear, int minYear, int maxYear, int minDays,
+      int maxDays, long sumDays, int daysCount, byte[] widths, byte[] payload) {
+    this(count, firstYear, minYear, maxYear, minDays, maxDays, sumDays, daysCount, widths, payload,
+        payload.length);
+  }
+
+  /**
+   * Creates a block from its header values, with or without its encoded columns.
+   */
+  private CompressedBlock(int count, int firstYear, int minYear, int maxYear, int minDays,
+      int maxDays, long sumDays, int daysCount, byte[] widths, byte[] payload, int encodedSize) {
+    this.count = count;
+    this.firstYear = firstYear;
+    this.minYear = minYear;
+    this.maxYear = maxYear;
+    this.minDays = minDays;
+    this.maxDays = maxDays;
+    this.sumDays = sumDays;
+    this.daysCount = daysCount;
+    this.widths = widths;
+    this.payload = payload;
+    this.encodedSize = encodedSize;
+  }
+
+  /**
+   * Appends bit fields of any width up to 32 to a byte stream, least significant bits first.
+   */
+  private static class BitWriter {
+    /**
+     * The bytes written so far
+     */
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    /**
+     * Bits not yet written out
+     */
+    private long bits;
+    /**
+     * Number of pending bits, always below 8 between calls
+     */
+    private int pending;
+
+    /**
+     * Appends the low bits of a value.
+     *
+     * @param value the value to append
+     * @param width the number of bits to append, between 0 and 32
+     */
+    private void write(int value, int width) {
+      if (width == 0) {
+        return;
+      }
+      bits |= (value & (-1L >>> (64 - width))) << pending;
+      pending += width;
+      while (pending >= 8) {
+        out.write((int) bits);
+        bits >>>= 8;
+        pending -= 8;
+      }
+    }
+
+    /**
+     * Pads the pending bits to a whole byte.
+     */
+    private void align() {
+      if (pending > 0) {
+        out.write((int) bits);
+      }
+      bits = 0;
+      pending = 0;
+    }
+  }
+
+  /**
+   * Reads bit fields written by a BitWriter.
+   */
+  private static class BitReader {
+    /**
+     * The bytes to read
+     */
+    private final byte[] buf;
+    /**
+     * Index of the next unread byte
+     */
+    private int pos;
+    /**
+     * Bits read from buf but not yet returned
+     */
+    private long bits;
+    /**
+     * Number of buffered bits
+     */
+    private int pending;
+
+    /**
+     * Creates a reader at the start of the given bytes.
+     *
+     * @param buf the bytes to read
+     */
+    private BitReader(byte[] buf) {
+      this.buf = buf;
+    }
+
+    /**
+     * Reads the next bit field.
+     *
+     * @param width the number of bits to read, between 0 and 32
+     * @return the field as an unsigned value
+     */
+    private int read(int width) {
+      while (pending < width) {
+        bits |= (long) (buf[pos++] & 0xFF) << pending;
+        pending += 8;
+      }
+      int value = (int) (bits & ((1L << width) - 1));
+      bits >>>= width;
+      pending -= width;
+      return value;
+    }
+
+    /**
+     * Skips to the start of the next whole byte.
+     */
+    private void align() {
+      bits = 0;
+      pending = 0;
+    }
+  }
+
+  /**
+   * Finds the number of bits needed to store a non-negative value.
+   *
+   * @param value the largest value to store
+   * @return the bit width, 0 for 0
+   */
+  private static int width(int value) {
+    return 32 - Integer.numberOfLeadingZeros(value);
+  }
+
+  /**
+   * Builds the usual "1900-01" form of the winter starting in the given year.
+   *
+   * @param year the starting year
+   * @return the winter string
+   */
+  private static String standardWinter(int year) {
+    int next = Math.floorMod(year + 1, 100);
+    return year + (next < 10 ? "-0" : "-") + next;
+  }
+
+  /**
+   * Encodes the given records into a block.
+   *
+   * @param records the records of the block, at least one
+   * @return the encoded block
+   * @throws IllegalArgumentException if records is empty or a winter is too long to store
+   */
+  public static CompressedBlock encode(List<IceDataEntry> records) {
+    int n = records.size();
+    if (n == 0) {
+      throw new IllegalArgumentException("ERROR: a block needs at least one record");
+    }
+
+    // the first pass collects the column values and the header statistics
+    int[] years = new int[n];
+    int[] freezes = new int[n];
+    int[] thaws = new int[n];
+    int[] days = new int[n];
+    int minYear = Integer.MAX_VALUE;
+    int maxYear = Integer.MIN_VALUE;
+    int minDays = Integer.MAX_VALUE;
+    int maxDays = -1;
+    long sumDays = 0;
+    int daysCount = 0;
+    int maxDelta = 0;
+    int maxFreeze = 0;
+    int maxThaw = 0;
+    for (int i = 0; i < n; i++) {
+      IceDataEntry r = records.get(i);
+      years[i] = r.getYear();
+      freezes[i] = DateUtil.dayOfSeason(r.getFreezeDate());
+      thaws[i] = DateUtil.dayOfSeason(r.getThawDate());
+      days[i] = r.getDaysOfIceCover();
+      minYear = Math.min(minYear, years[i]);
+      maxYear = Math.max(maxYear, years[i]);
+      if (i > 0) {
+        maxDelta = Math.max(maxDelta, zigzag(years[i] - years[i - 1]));
+      }
+      maxFreeze = Math.max(maxFreeze, freezes[i]);
+      maxThaw = Math.max(maxThaw, thaws[i]);
+      if (days[i] >= 0) {
+        minDays = Math.min(minDays, days[i]);
+        maxDays = Math.max(maxDays, days[i]);
+        sumDays += days[i];
+        daysCount++;
+      }
+    }
+    if (daysCount == 0) {
+      minDays = 0;
+    }
+    byte[] widths = {(byte) width(maxDelta), (byte) width(maxFreeze), (byte) width(maxThaw),
+        (byte) width(Math.max(0, maxDays - minDays))};
+
+    // then each column is written in turn
+    BitWriter out = new BitWriter();
+    for (int i = 1; i < n; i++) {
+      out.write(zigzag(years[i] - years[i - 1]), widths[0]);
+    }
+    for (int i = 0; i < n; i++) {
+      out.write(freezes[i] < 0 ? 1 : 0, 1);
+      out.write(thaws[i] < 0 ? 1 : 0, 1);
+      out.write(days[i] < 0 ? 1 : 0, 1);
+      out.write(records.get(i).getWinter().equals(standardWinter(years[i])) ? 0 : 1, 1);
+    }
+    for (int i = 0; i < n; i++) {
+      if (freezes[i] >= 0) {
+        out.write(freezes[i], widths[1]);
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      if (thaws[i] >= 0) {
+        out.write(thaws[i], widths[2]);
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      if (days[i] >= 0) {
+        out.write(days[i] - minDays, widths[3]);
+      }
+    }
+    out.align();
+
+    // unusual winters follow as length-prefixed UTF-8 text
+    for (int i = 0; i < n; i++) {
+      String winter = records.get(i).getWinter();
+      if (!winter.equals(standardWinter(years[i]))) {
+        byte[] text = winter.getBytes(StandardCharsets.UTF_8);
+        if (text.length > 0xFFFF) {
+          throw new IllegalArgumentException("ERROR: winter too long to store: " + winter);
+        }
+        out.write(text.length, 16);
+        out.out.write(text, 0, text.length);
+      }
+    }
+    return new CompressedBlock(n, years[0], minYear, maxYear, minDays, maxDays, sumDays, daysCount,
+        widths, out.out.toByteArray());
+  }
+
+  /**
+   * Maps a signed delta to an unsigned value so that small deltas of either sign stay small.
+   *
+   * @param delta the signed delta
+   * @return the zigzag encoding
+   */
+  private static int zigzag(int delta) {
+    return (delta << 1) ^ (delta >> 31);
+  }
+
+  /**
+   * Decodes the records of the block.
+   *
+   * @return a new list of the block's records, in the order they were encoded
+   * @throws IllegalStateException if only the block's header was read
+   */
+  public ArrayList<IceDataEntry> decode() {
+    if (payload == null) {
+      throw new IllegalStateException("ERROR: only the header of this block was read");
+    }
+    BitReader in = new BitReader(payload);
+    int[] years = new int[count];
+    years[0] = firstYear;
+    for (int i = 1; i < count; i++) {
+      int zz = in.read(widths[0]);
+      years[i] = years[i - 1] + ((zz >>> 1) ^ -(zz & 1));
+    }
+    int[] flags = new int[count];
+    for (int i = 0; i < count; i++) {
+      flags[i] = in.read(4);
+    }
+    int[] freezes = new int[count];
+    for (int i = 0; i < count; i++) {
+      freezes[i] = (flags[i] & 1) != 0 ? -1 : in.read(widths[1]);
+    }
+    int[] thaws = new int[count];
+    for (int i = 0; i < count; i++) {
+      thaws[i] = (flags[i] & 2) != 0 ? -1 : in.read(widths[2]);
+    }
+    int[] days = new int[count];
+    for (int i = 0; i < count; i++) {
+      days[i] = (flags[i] & 4) != 0 ? IceDataEntry.MISSING : minDays + in.read(widths[3]);
+    }
+    in.align();
+
+    ArrayList<IceDataEntry> records = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String winter = standardWinter(years[i]);
+      if ((flags[i] & 8) != 0) {
+        int length = in.read(16);
+        winter = new String(payload, in.pos, length, StandardCharsets.UTF_8);
+        in.pos += length;
+      }
+      records.add(new IceDataEntry(winter, DateUtil.dateOfSeason(freezes[i]),
+          DateUtil.dateOfSeason(thaws[i]), days[i]));
+    }
+    return records;
+  }
+
+  /**
+   * Writes the block header and columns.
+   *
+   * @param out the stream to write to
+   * @throws IOException if the stream cannot be written
+   */
+  public void writeTo(DataOutputStream out) throws IOException {
+    out.writeInt(count);
+    out.writeInt(firstYear);
+    out.writeInt(minYear);
+    out.writeInt(maxYear);
+    out.writeInt(minDays);
+    out.writeInt(maxDays);
+    out.writeLong(sumDays);
+    out.writeInt(daysCount);
+    out.write(widths);
+    out.writeInt(payload.length);
+    out.write(payload);
+  }
+
+  /**
+   * Reads the next block written by writeTo().
+   *
+   * @param in the stream to read from
+   * @return the block, or null if the stream is at the end-of-archive marker
+   * @throws IOException if the stream cannot be read or ends early
+   */
+  public static CompressedBlock readFrom(DataInputStream in) throws IOException {
+    CompressedBlock header = readHeader(in);
+    return header == null ? null : header.readPayload(in);
+  }
+
+  /**
+   * Reads the header of the next block written by writeTo(), leaving the stream at the block's
+   * encoded columns. These must then be read with readPayload() or passed over with
+   * skipPayload(). The returned block answers the header queries but cannot be decoded.
+   *
+   * @param in the stream to read from
+   * @return the block header, or null if the stream is at the end-of-archive marker
+   * @throws IOException if the stream cannot be read or ends early
+   */
+  public static CompressedBlock readHeader(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    if (count == 0) {
+      return null;
+    }
+    int firstYear = in.readInt();
+    int minYear = in.readInt();
+    int maxYear = in.readInt();
+    int minDays = in.readInt();
+    int maxDays = in.readInt();
+    long sumDays = in.readLong();
+    int daysCount = in.readInt();
+    byte[] widths = new byte[4];
+    in.readFully(widths);
+    int encodedSize = in.readInt();
+    if (encodedSize < 0) {
+      throw new IOException("Corrupt block: negative encoded size");
+    }
+    return new CompressedBlock(count, firstYear, minYear, maxYear, minDays, maxDays, sumDays,
+        daysCount, widths, null, encodedSize);
+  }
+
+  /**
+   * Reads the encoded columns that follow a header read with readHeader().
+   *
+   * @param in the stream the header was read from
+   * @return a block that can be decoded
+   * @throws IOException if the stream cannot be read or ends early
+   */
+  public CompressedBlock readPayload(DataInputStream in) throws IOException {
+    byte[] columns = new byte[encodedSize];
+    in.readFully(columns);
+    return new CompressedBlock(count, firstYear, minYear, maxYear, minDays, maxDays, sumDays,
+        daysCount, widths, columns);
+  }
+
+  /**
+   * Passes over the encoded columns that follow a header read with readHeader(), without reading
+   * them into memory. A stream over a file seeks past them.
+   *
+   * @param in the stream the header was read from
+   * @throws IOException if the stream cannot be read or ends early
+   */
+  public void skipPayload(DataInputStream in) throws IOException {
+    in.skipNBytes(encodedSize);
+  }
+
+  /**
+   * Checks whether the block may hold winters starting between year1 and year2, inclusive.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return false if the block can be skipped
+   */
+  public boolean overlapsYears(int year1, int year2) {
+    return minYear <= year2 && maxYear >= year1;
+  }
+
+  /**
+   * Checks whether the block may hold durations between min and max, inclusive.
+   *
+   * @param min the smallest duration
+   * @param max the largest duration
+   * @return false if the block can be skipped
+   */
+  public boolean overlapsDurations(int min, int max) {
+    return daysCount > 0 && minDays <= max && maxDays >= min;
+  }
+
+  /**
+   * Gets the number of records in the block.
+   *
+   * @return the number of records
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Gets the smallest year in the block.
+   *
+   * @return the smallest starting year
+   */
+  public int getMinYear() {
+    return minYear;
+  }
+
+  /**
+   * Gets the largest year in the block.
+   *
+   * @return the largest starting year
+   */
+  public int getMaxYear() {
+    return maxYear;
+  }
+
+  /**
+   * Gets the total known days of ice cover in the block without decoding it.
+   *
+   * @return the total days of ice cover
+   */
+  public long getTotalFreezeDuration() {
+    return sumDays;
+  }
+
+  /**
+   * Gets the number of records with known days of ice cover without decoding the block.
+   *
+   * @return the number of known durations
+   */
+  public int getDurationCount() {
+    return daysCount;
+  }
+
+  /**
+   * Gets the size of the encoded columns.
+   *
+   * @return the number of encoded bytes, excluding the header
+   */
+  public int getEncodedSize() {
+    return encodedSize;
+  }
+}
@@ -0,0 +1,57 @@
+/**
+ * Decides which record to keep when two sources disagree about the same winter during a
+ * LakeMerge. Exact duplicates never reach the policy.
+ */
+public interface ConflictPolicy {
+  /**
+   * Keeps the record from the source listed first, so sources can be given in priority order.
+   */
+  ConflictPolicy PREFER_FIRST = (kept, incoming) -> kept;
+
+  /**
+   * Keeps the record with both dates, then the one with a known duration, then the one from the
+   * source listed first.
+   */
+  ConflictPolicy PREFER_COMPLETE = (kept, incoming) -> {
+    if (kept.hasCompleteData() != incoming.hasCompleteData()) {
+      return kept.hasCompleteData() ? kept : incoming;
+    }
+    boolean keptKnown = kept.getDaysOfIceCover() != IceDataEntry.MISSING;
+    boolean incomingKnown = incoming.getDaysOfIceCover() != IceDataEntry.MISSING;
+    return keptKnown || !incomingKnown ? kept : incoming;
+  };
+
+  /**
+   * Combines the records into one with the earliest freeze date and the latest thaw date. When
+   * both dates are known the duration is recomputed from them, as updateDuration() does, so it
+   * matches the widened span; otherwise it is the longer of the two durations rather than their
+   * sum, since both describe the same ice.
+   */
+  ConflictPolicy WIDEST_SPAN = (kept, incoming) -> {
+    String freeze = kept.getFreezeDate();
+    if (freeze == null || (incoming.getFreezeDate() != null
+        && DateUtil.compareDates(incoming.getFreezeDate(), freeze) < 0)) {
+      freeze = incoming.getFreezeDate();
+    }
+    String thaw = kept.getThawDate();
+    if (thaw == null || (incoming.getThawDate() != null
+        && DateUtil.compareDates(incoming.getThawDate(), thaw) > 0)) {
+      thaw = incoming.getThawDate();
+    }
+    int days = freeze != null && thaw != null
+        ? DateUtil.daysBetween(kept.getWinter(), freeze, thaw) : -1;
+    if (days == -1) {
+      days = Math.max(kept.getDaysOfIceCover(), incoming.getDaysOfIceCover());
+    }
+    return new IceDataEntry(kept.getWinter(), freeze, thaw, days);
+  };
+
+  /**
+   * Resolves a conflict between two records of the same winter.
+   *
+   * @param kept     the record kept so far, from an earlier source or an earlier resolution
+   * @param incoming the conflicting record from a later source
+   * @return the record to keep; may be either argument or a new record
+   */
+  IceDataEntry resolve(IceDataEntry kept, IceDataEntry incoming);
+}
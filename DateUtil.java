@@ -10,6 +10,27 @@ import java.util.Map;
 public class DateUtil {
   private static final Map<String, Integer> MONTHS = new HashMap<>();
 
+  /**
+   * Month names indexed by month number (index 0 is unused)
+   */
+  private static final String[] MONTH_NAMES = {null, "January", "February", "March", "April", "May",
+      "June", "July", "August", "September", "October", "November", "December"};
+
+  /**
+   * Longest possible length of each month, indexed by month number (index 0 is unused)
+   */
+  private static final int[] MONTH_LENGTHS = {0, 31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+  /**
+   * Day of the season on which each month starts, counting from August 1, indexed by month number
+   */
+  private static final int[] SEASON_OFFSETS = new int[13];
+
+  /**
+   * Number of distinct days in a season, including February 29
+   */
+  public static final int DAYS_PER_SEASON = 366;
+
   static {
     MONTHS.put("January", 1);
     MONTHS.put("February", 2);
@@ -23,6 +44,14 @@ public class DateUtil {
     MONTHS.put("October", 10);
     MONTHS.put("November", 11);
     MONTHS.put("December", 12);
+
+    // seasons run from August 1 to July 31
+    int offset = 0;
+    for (int i = 0; i < 12; i++) {
+      int month = (i + 7) % 12 + 1;
+      SEASON_OFFSETS[month] = offset;
+      offset += MONTH_LENGTHS[month];
+    }
   }
 
   /**
@@ -98,4 +127,64 @@ public class DateUtil {
 
     return (int) ChronoUnit.DAYS.between(start, end);
   }
+
+  /**
+   * Converts a date string into the number of days since August 1 of its season, so that dates
+   * within a winter can be compared as ints. February 29 always has its own day, so every date maps
+   * to the same value regardless of leap years. Invalid dates are reported without throwing.
+   *
+   * @param date the freeze or thaw date (e.g., "December 22"), may be null
+   * @return a day between 0 and DAYS_PER_SEASON - 1, or -1 if the date is missing or invalid
+   */
+  public static int dayOfSeason(String date) {
+    if (date == null) {
+      return -1;
+    }
+
+    int space = date.indexOf(' ');
+    if (space <= 0 || space == date.length() - 1 || date.indexOf(' ', space + 1) >= 0) {
+      return -1;
+    }
+
+    int month = MONTHS.getOrDefault(date.substring(0, space), -1);
+    if (month == -1) {
+      return -1;
+    }
+
+    // parse the day by hand so bad input never costs an exception
+    int day = 0;
+    for (int i = space + 1; i < date.length(); i++) {
+      char c = date.charAt(i);
+      if (c < '0' || c > '9' || day > MONTH_LENGTHS[month]) {
+        return -1;
+      }
+      day = day * 10 + (c - '0');
+    }
+    if (day < 1 || day > MONTH_LENGTHS[month]) {
+      return -1;
+    }
+
+    return SEASON_OFFSETS[month] + day - 1;
+  }
+
+  /**
+   * Converts a day of the season back into a date string. This is the inverse of dayOfSeason().
+   *
+   * @param dayOfSeason a day between 0 and DAYS_PER_SEASON - 1
+   * @return the date as a string (e.g., "December 22"), or null if dayOfSeason is out of range
+   */
+  public static String dateOfSeason(int dayOfSeason) {
+    if (dayOfSeason < 0 || dayOfSeason >= DAYS_PER_SEASON) {
+      return null;
+    }
+
+    // walk the months of the season until the day falls inside one
+    for (int i = 11; i >= 0; i--) {
+      int month = (i + 7) % 12 + 1;
+      if (dayOfSeason >= SEASON_OFFSETS[month]) {
+        return MONTH_NAMES[month] + " " + (dayOfSeason - SEASON_OFFSETS[month] + 1);
+      }
+    }
+    return null;
+  }
 }
@@ -50,6 +50,15 @@ public class DoubleNode {
     return data;
   }
 
+  /**
+   * Replaces the LakeRecord stored in this node
+   * 
+   * @param data the new LakeRecord to be contained in this node
+   */
+  public void setLakeRecord(IceDataEntry data) {
+    this.data = data;
+  }
+
   /**
    * Accesses the previous node in the list
    * 
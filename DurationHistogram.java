@@ -0,0 +1,138 @@
+/**
+ * A histogram of days of ice cover with one bin per day, used to answer percentile queries
+ * without sorting. Because durations are small whole numbers, a bin per day keeps the counts
+ * exact in bounded memory: percentiles are exact, values can be removed as well as added, and
+ * histograms built over different lakes or list segments can be merged by adding their bins.
+ *
+ * Durations of MAX_DAYS or more share a single overflow bin, and missing durations (negative
+ * values) are ignored.
+ */
+public class DurationHistogram {
+  /**
+   * Durations at or above this value are counted in the overflow bin
+   */
+  public static final int MAX_DAYS = DateUtil.DAYS_PER_SEASON;
+
+  /**
+   * counts[d] is the number of records with d days of ice cover; counts[MAX_DAYS] is the overflow
+   */
+  private final long[] counts = new long[MAX_DAYS + 1];
+  /**
+   * Total number of counted records
+   */
+  private long total;
+
+  /**
+   * Counts one record with the given duration in O(1) time.
+   *
+   * @param days the days of ice cover; negative values are ignored
+   */
+  public void add(int days) {
+    if (days >= 0) {
+      counts[Math.min(days, MAX_DAYS)]++;
+      total++;
+    }
+  }
+
+  /**
+   * Removes one previously counted record with the given duration in O(1) time.
+   *
+   * @param days the days of ice cover; negative values are ignored
+   */
+  public void remove(int days) {
+    if (days >= 0 && counts[Math.min(days, MAX_DAYS)] > 0) {
+      counts[Math.min(days, MAX_DAYS)]--;
+      total--;
+    }
+  }
+
+  /**
+   * Adds all of another histogram's counts to this one.
+   *
+   * @param other another histogram, e.g. of a different lake or list segment
+   * @return this histogram
+   */
+  public DurationHistogram merge(DurationHistogram other) {
+    for (int d = 0; d <= MAX_DAYS; d++) {
+      counts[d] += other.counts[d];
+    }
+    total += other.total;
+    return this;
+  }
+
+  /**
+   * Creates an independent copy of this histogram.
+   *
+   * @return a new histogram with the same counts
+   */
+  public DurationHistogram copy() {
+    return new DurationHistogram().merge(this);
+  }
+
+  /**
+   * Gets the number of counted records.
+   *
+   * @return the number of records
+   */
+  public long count() {
+    return total;
+  }
+
+  /**
+   * Gets the number of records with exactly the given duration.
+   *
+   * @param days the days of ice cover
+   * @return the count, where MAX_DAYS and above share the overflow bin
+   */
+  public long count(int days) {
+    return days < 0 ? 0 : counts[Math.min(days, MAX_DAYS)];
+  }
+
+  /**
+   * Finds the given percentile using the nearest-rank method, in time bounded by the number of
+   * bins regardless of how many records were counted.
+   *
+   * @param p the percentile between 0 and 100, e.g. 50 for the median or 90 for P90
+   * @return the smallest duration such that at least p percent of records are at or below it
+   *         (MAX_DAYS for the overflow bin), or -1 if the histogram is empty
+   * @throws IllegalArgumentException if p is outside 0 to 100
+   */
+  public int percentile(double p) {
+    if (p < 0 || p > 100) {
+      throw new IllegalArgumentException("ERROR: percentile must be between 0 and 100");
+    }
+    if (total == 0) {
+      return -1;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(p / 100 * total));
+    long seen = 0;
+    for (int d = 0; d <= MAX_DAYS; d++) {
+      seen += counts[d];
+      if (seen >= rank) {
+        return d;
+      }
+    }
+    return MAX_DAYS;
+  }
+
+  /**
+   * Groups the counts into bins of the given width.
+   *
+   * @param binWidth the number of days in each bin
+   * @return counts where entry i covers durations from i * binWidth to (i + 1) * binWidth - 1; the
+   *         last entry also includes the overflow bin
+   * @throws IllegalArgumentException if binWidth is not positive
+   */
+  public long[] toBins(int binWidth) {
+    if (binWidth <= 0) {
+      throw new IllegalArgumentException("ERROR: bin width must be positive");
+    }
+    long[] bins = new long[(MAX_DAYS + binWidth - 1) / binWidth];
+    for (int d = 0; d < MAX_DAYS; d++) {
+      bins[d / binWidth] += counts[d];
+    }
+    bins[bins.length - 1] += counts[MAX_DAYS];
+    return bins;
+  }
+}
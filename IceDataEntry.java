@@ -168,6 +168,17 @@ public class IceDataEntry {
     return false;
   }
 
+  /**
+   * Computes a hash code consistent with equals(), so records can be deduplicated in hash sets.
+   * A record's hash code changes if it is merged or its duration is updated.
+   *
+   * @return the hash code of the record's values
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(winter, freezeDate, thawDate, daysOfIceCover);
+  }
+
   /**
    * Creates a copy of the LakeRecord
    * @return a new LakeRecord with identical values
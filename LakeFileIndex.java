@@ -0,0 +1,472 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A sparse index of a lake csv file that lets a year range be loaded without parsing the rest of
+ * the file. The file's data lines are grouped into strides of a fixed number of lines, and the
+ * index keeps the byte offset and the smallest and largest winter start year of each stride.
+ * Loading a range reads only the strides whose years overlap it, so the right lines are found
+ * whether the file is in reverse chronological order, chronological order, or has corrections
+ * appended out of order. The loaded records are put in reverse file order, as LakeRecordReader
+ * does, which is chronological only for the usual newest-first files.
+ *
+ * The index can be saved next to the csv file and loaded again, and update() extends it over
+ * lines appended since it was built.
+ */
+public class LakeFileIndex {
+  /**
+   * Identifies an index file ("LIX2")
+   */
+  private static final int MAGIC = 0x4C495832;
+  /**
+   * Default number of data lines per stride
+   */
+  public static final int DEFAULT_STRIDE = 64;
+  /**
+   * Bytes read from the csv file at a time while indexing
+   */
+  private static final int READ_SIZE = 1 << 16;
+  /**
+   * Largest run of adjacent strides read into memory at once by loadRange()
+   */
+  private static final int MAX_RUN_BYTES = 1 << 24;
+  /**
+   * Bytes in a saved index before its strides
+   */
+  private static final int HEADER_BYTES = 40;
+  /**
+   * Bytes per stride in a saved index
+   */
+  private static final int STRIDE_BYTES = 16;
+
+  /**
+   * The indexed csv file
+   */
+  private final Path csv;
+  /**
+   * Number of data lines per stride
+   */
+  private final int stride;
+  /**
+   * Byte offset of the first line of each stride
+   */
+  private long[] offsets = new long[16];
+  /**
+   * Smallest winter start year in each stride
+   */
+  private int[] minYears = new int[16];
+  /**
+   * Largest winter start year in each stride
+   */
+  private int[] maxYears = new int[16];
+  /**
+   * Number of strides
+   */
+  private int strides;
+  /**
+   * Number of data lines in the last stride
+   */
+  private int linesInLast;
+  /**
+   * Number of bytes of the csv file covered by the index, always at the end of a line
+   */
+  private long indexedLength;
+
+  /**
+   * Creates an empty index of the given file.
+   *
+   * @param csv    the csv file
+   * @param stride the number of data lines per stride
+   */
+  private LakeFileIndex(Path csv, int stride) {
+    this.csv = csv;
+    this.stride = stride;
+  }
+
+  /**
+   * Builds the index of a csv file with the default stride.
+   *
+   * @param csv the csv file, with a header line
+   * @return the index of every complete line of the file
+   * @throws IOException if the file cannot be read
+   */
+  public static LakeFileIndex build(Path csv) throws IOException {
+    return build(csv, DEFAULT_STRIDE);
+  }
+
+  /**
+   * Builds the index of a csv file.
+   *
+   * @param csv    the csv file, with a header line
+   * @param stride the number of data lines per stride; smaller strides read less per range but
+   *               make the index larger
+   * @return the index of every complete line of the file
+   * @throws IOException              if the file cannot be read
+   * @throws IllegalArgumentException if stride is not positive
+   */
+  public static LakeFileIndex build(Path csv, int stride) throws IOException {
+    if (stride <= 0) {
+      throw new IllegalArgumentException("ERROR: stride must be positive");
+    }
+    LakeFileIndex index = new LakeFileIndex(csv, stride);
+    index.update();
+    return index;
+  }
+
+  /**
+   * Gets the usual location of the index of a csv file, next to it with ".idx" appended.
+   *
+   * @param csv the csv file
+   * @return the path of its index file
+   */
+  public static Path sidecarOf(Path csv) {
+    return csv.resolveSibling(csv.getFileName() + ".idx");
+  }
+
+  /**
+   * Loads an index saved with save(), then updates it over any lines appended since. If the
+   * index is missing, unreadable or inconsistent, or the indexed part of the file has changed
+   * since the index was saved, it is rebuilt from the csv file.
+   *
+   * The saved index holds the file's modified time and a checksum of the indexed bytes. If the
+   * file still has the saved modified time and length, it is trusted without reading the file;
+   * otherwise the checksum of the indexed bytes is checked to tell appended lines from a rewrite.
+   *
+   * @param csv     the csv file
+   * @param sidecar the saved index
+   * @return the index of every complete line of the file
+   * @throws IOException if the csv file cannot be read
+   */
+  public static LakeFileIndex load(Path csv, Path sidecar) throws IOException {
+    LakeFileIndex index = null;
+    long modified = 0;
+    long checksum = 0;
+    if (Files.exists(sidecar)) {
+      try (DataInputStream in = new DataInputStream(
+          new BufferedInputStream(Files.newInputStream(sidecar)))) {
+        long sidecarLength = Files.size(sidecar);
+        if (in.readInt() == MAGIC) {
+          int stride = in.readInt();
+          modified = in.readLong();
+          checksum = in.readLong();
+          long indexedLength = in.readLong();
+          int linesInLast = in.readInt();
+          int strides = in.readInt();
+
+          // a corrupt header must not size the arrays, so it is checked against the file length
+          if (stride > 0 && strides >= 0 && indexedLength >= 0
+              && sidecarLength == HEADER_BYTES + (long) strides * STRIDE_BYTES) {
+            index = new LakeFileIndex(csv, stride);
+            index.indexedLength = indexedLength;
+            index.linesInLast = linesInLast;
+            index.strides = strides;
+            index.offsets = new long[Math.max(16, strides)];
+            index.minYears = new int[index.offsets.length];
+            index.maxYears = new int[index.offsets.length];
+            for (int s = 0; s < strides; s++) {
+              index.offsets[s] = in.readLong();
+              index.minYears[s] = in.readInt();
+              index.maxYears[s] = in.readInt();
+            }
+          }
+        }
+      } catch (IOException e) {
+        index = null;
+      }
+    }
+    if (index == null || !index.isConsistent()) {
+      return build(csv, index == null ? DEFAULT_STRIDE : index.stride);
+    }
+
+    long length = Files.size(csv);
+    boolean unchanged = length == index.indexedLength
+        && Files.getLastModifiedTime(csv).toMillis() == modified;
+    if (!unchanged && (length < index.indexedLength
+        || checksumOf(csv, index.indexedLength) != checksum)) {
+      return build(csv, index.stride);
+    }
+    index.update();
+    return index;
+  }
+
+  /**
+   * Checks the strides read from a saved index: their offsets must rise within the indexed
+   * length, and the last stride must hold between 1 and stride lines.
+   *
+   * @return true if the index can be used
+   */
+  private boolean isConsistent() {
+    if (strides == 0) {
+      return linesInLast == 0;
+    }
+    if (linesInLast < 1 || linesInLast > stride || offsets[0] <= 0
+        || offsets[strides - 1] >= indexedLength) {
+      return false;
+    }
+    for (int s = 1; s < strides; s++) {
+      if (offsets[s] <= offsets[s - 1]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes the index to a file so that later loads can skip building it. The indexed bytes of the
+   * csv file are read once to record their checksum.
+   *
+   * @param sidecar the file to write, e.g. sidecarOf(csv)
+   * @throws IOException if the csv file cannot be read or the index cannot be written
+   */
+  public void save(Path sidecar) throws IOException {
+    long modified = Files.getLastModifiedTime(csv).toMillis();
+    long checksum = checksumOf(csv, indexedLength);
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(sidecar)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(stride);
+      out.writeLong(modified);
+      out.writeLong(checksum);
+      out.writeLong(indexedLength);
+      out.writeInt(linesInLast);
+      out.writeInt(strides);
+      for (int s = 0; s < strides; s++) {
+        out.writeLong(offsets[s]);
+        out.writeInt(minYears[s]);
+        out.writeInt(maxYears[s]);
+      }
+    }
+  }
+
+  /**
+   * Computes the CRC-32 checksum of the first bytes of a file.
+   *
+   * @param file   the file
+   * @param length the number of bytes to check
+   * @return the checksum, or -1 if the file is shorter than length
+   * @throws IOException if the file cannot be read
+   */
+  private static long checksumOf(Path file, long length) throws IOException {
+    CRC32 crc = new CRC32();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buf = ByteBuffer.allocate(READ_SIZE);
+      long pos = 0;
+      while (pos < length) {
+        buf.clear().limit((int) Math.min(READ_SIZE, length - pos));
+        int read = channel.read(buf, pos);
+        if (read <= 0) {
+          return -1;
+        }
+        buf.flip();
+        crc.update(buf);
+        pos += read;
+      }
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Extends the index over the complete lines appended to the file since it was last indexed.
+   *
+   * @return the number of data lines added to the index
+   * @throws IOException if the file cannot be read
+   */
+  public int update() throws IOException {
+    int added = 0;
+    try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+      ByteBuffer buf = ByteBuffer.allocate(READ_SIZE);
+      byte[] line = new byte[256];
+      int lineLength = 0;
+      long pos = indexedLength;
+      long lineStart = pos;
+
+      while (channel.read(buf, pos) > 0) {
+        buf.flip();
+        while (buf.hasRemaining()) {
+          byte b = buf.get();
+          pos++;
+          if (b != '\n') {
+            if (lineLength == line.length) {
+              line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[lineLength++] = b;
+            continue;
+          }
+          // the first line of the file is the header
+          if (lineStart > 0) {
+            indexLine(lineStart, yearOf(line, 0, lineLength));
+            added++;
+          }
+          indexedLength = pos;
+          lineStart = pos;
+          lineLength = 0;
+        }
+        buf.clear();
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Adds one data line to the last stride, starting a new stride if it is full.
+   *
+   * @param offset the byte offset of the line
+   * @param year   the winter start year of the line, or Integer.MIN_VALUE if it has none
+   */
+  private void indexLine(long offset, int year) {
+    if (strides == 0 || linesInLast == stride) {
+      if (strides == offsets.length) {
+        offsets = Arrays.copyOf(offsets, strides * 2);
+        minYears = Arrays.copyOf(minYears, strides * 2);
+        maxYears = Arrays.copyOf(maxYears, strides * 2);
+      }
+      offsets[strides] = offset;
+      minYears[strides] = Integer.MAX_VALUE;
+      maxYears[strides] = Integer.MIN_VALUE;
+      strides++;
+      linesInLast = 0;
+    }
+    linesInLast++;
+    if (year != Integer.MIN_VALUE) {
+      minYears[strides - 1] = Math.min(minYears[strides - 1], year);
+      maxYears[strides - 1] = Math.max(maxYears[strides - 1], year);
+    }
+  }
+
+  /**
+   * Reads the winter start year from the first column of a line without parsing the rest of it.
+   *
+   * @param line the bytes holding the line
+   * @param from the index of the first byte of the line
+   * @param to   the index after the last byte of the line
+   * @return the year, or Integer.MIN_VALUE if the first column does not start with four digits
+   */
+  private static int yearOf(byte[] line, int from, int to) {
+    int i = from;
+    while (i < to && (line[i] == ' ' || line[i] == '"')) {
+      i++;
+    }
+    if (i + 4 > to) {
+      return Integer.MIN_VALUE;
+    }
+    int year = 0;
+    for (int end = i + 4; i < end; i++) {
+      if (line[i] < '0' || line[i] > '9') {
+        return Integer.MIN_VALUE;
+      }
+      year = year * 10 + (line[i] - '0');
+    }
+    return year;
+  }
+
+  /**
+   * Loads the records whose winter starts between year1 and year2, inclusive, reading only the
+   * strides that may hold them. As with LakeRecordReader, the records are put in reverse file
+   * order, so they are chronological if the file lists the newest winters first, and they are
+   * cleaned and merged by winter as the LakeIceAnalyzer constructor does, so the result matches a
+   * full load filtered with filterByYear() whatever the order of the file.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return a new list holding the matching records
+   * @throws IOException if the file cannot be read
+   */
+  public LakeIceAnalyzer loadRange(int year1, int year2) throws IOException {
+    ArrayList<IceDataEntry> records = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+      for (int s = 0; s < strides; s++) {
+        if (minYears[s] > year2 || maxYears[s] < year1) {
+          continue;
+        }
+        // read runs of adjacent matching strides at once, up to MAX_RUN_BYTES unless a single
+        // stride is larger
+        int last = s;
+        while (last + 1 < strides && minYears[last + 1] <= year2 && maxYears[last + 1] >= year1
+            && endOf(last + 1) - offsets[s] <= MAX_RUN_BYTES) {
+          last++;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(endOf(last) - offsets[s]));
+        while (buf.hasRemaining() && channel.read(buf, offsets[s] + buf.position()) > 0) {
+          // keep reading until the run is complete
+        }
+        parseRun(buf.array(), buf.position(), year1, year2, records);
+        s = last;
+      }
+    }
+
+    ArrayList<IceDataEntry> chronological = new ArrayList<>();
+    for (int i = records.size() - 1; i >= 0; i--) {
+      chronological.add(records.get(i));
+    }
+    return new LakeIceAnalyzer(chronological);
+  }
+
+  /**
+   * Finds the byte offset after the last line of a stride.
+   *
+   * @param s the stride
+   * @return the offset of the next stride, or the indexed length for the last stride
+   */
+  private long endOf(int s) {
+    return s + 1 < strides ? offsets[s + 1] : indexedLength;
+  }
+
+  /**
+   * Parses the lines of a run of strides, keeping the records in the year range.
+   *
+   * @param bytes   the bytes of the run
+   * @param length  the number of bytes read
+   * @param year1   the first year of the range
+   * @param year2   the last year of the range
+   * @param records the list to add the matching records to
+   */
+  private static void parseRun(byte[] bytes, int length, int year1, int year2,
+      ArrayList<IceDataEntry> records) {
+    int start = 0;
+    for (int i = 0; i < length; i++) {
+      if (bytes[i] != '\n') {
+        continue;
+      }
+      int end = i > start && bytes[i - 1] == '\r' ? i - 1 : i;
+      int year = yearOf(bytes, start, end);
+      if (year >= year1 && year <= year2) {
+        String line = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+        IceDataEntry record = LakeRecordReader.parseRecord(line);
+        if (record != null) {
+          records.add(record);
+        }
+      }
+      start = i + 1;
+    }
+  }
+
+  /**
+   * Gets the number of strides in the index.
+   *
+   * @return the number of strides
+   */
+  public int size() {
+    return strides;
+  }
+
+  /**
+   * Gets the number of bytes of the csv file covered by the index.
+   *
+   * @return the indexed length, always at the end of a line
+   */
+  public long getIndexedLength() {
+    return indexedLength;
+  }
+}
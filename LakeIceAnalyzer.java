@@ -6,7 +6,12 @@
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * A doubly-linked list implementation for managing freeze-thaw records of Lake Mendota. Implements
@@ -14,6 +19,23 @@ import java.util.Iterator;
  * data.
  */
 public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataEntry> {
+  /**
+   * Lists at least this long are scanned in parallel segments by the top-k queries.
+   */
+  private static final int PARALLEL_THRESHOLD = 1 << 16;
+  /**
+   * Ranking key: days of ice cover
+   */
+  private static final int KEY_DURATION = 0;
+  /**
+   * Ranking key: freeze day of the season
+   */
+  private static final int KEY_FREEZE = 1;
+  /**
+   * Ranking key: thaw day of the season
+   */
+  private static final int KEY_THAW = 2;
+
   /**
    * Pointer to head of the linked list.
    */
@@ -30,6 +52,51 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
    * Whether to traverse the list is reverse-chronological order.
    */
   private boolean reversed;
+  /**
+   * Number of structural or value changes made through this list's methods, used to detect stale
+   * derived data.
+   */
+  private int modCount;
+  /**
+   * Lazily built year-ordered prefix sums of the records, or null if not built or stale.
+   */
+  private YearIndex yearIndex;
+  /**
+   * Lazily built segment tree over the year index, or null if not built or stale.
+   */
+  private RangeTree rangeTree;
+  /**
+   * Lazily built freeze/thaw day buckets over the year index, or null if not built or stale.
+   */
+  private SeasonIndex seasonIndex;
+  /**
+   * Optional cache of filter and statistics results, or null if caching is disabled.
+   */
+  private QueryCache queryCache;
+  /**
+   * Lazily built histogram of the days of ice cover, kept up to date by add and remove, or null if
+   * not built or stale.
+   */
+  private DurationHistogram durationHistogram;
+  /**
+   * Lazily built least squares sums of the whole list, kept up to date by add and remove, or null
+   * if not built or stale.
+   */
+  private TrendStats trendStats;
+  /**
+   * Lazily built prefix sums of the least squares statistics over the year index, or null if not
+   * built or stale.
+   */
+  private TrendIndex trendIndex;
+  /**
+   * Optional detector that checks every added record, or null if none is attached.
+   */
+  private AnomalyDetector anomalyDetector;
+  /**
+   * Lazily built year/decade/century rollups, kept up to date by add, remove and mergeWinters, or
+   * null if not built or stale.
+   */
+  private RollupCube rollupCube;
 
   /**
    * Constructs an empty FreezeTracker.
@@ -138,6 +205,251 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
     head = null;
     tail = null;
     size = 0;
+    durationHistogram = null;
+    trendStats = null;
+    rollupCube = null;
+    modified();
+  }
+
+  /**
+   * Records that the contents of the list have changed, discarding any derived data built from the
+   * old contents.
+   */
+  private void modified() {
+    modCount++;
+    yearIndex = null;
+    rangeTree = null;
+    seasonIndex = null;
+    trendIndex = null;
+  }
+
+  /**
+   * Attaches a detector that checks every record added from now on against the records before
+   * it. The detector is first primed with the records already in the list, in list order.
+   *
+   * @param detector the detector to attach, or null to detach the current one
+   */
+  public void setAnomalyDetector(AnomalyDetector detector) {
+    anomalyDetector = detector;
+    if (detector != null) {
+      for (DoubleNode cur = head; cur != null; cur = cur.getNext()) {
+        detector.prime(cur.getLakeRecord());
+      }
+    }
+  }
+
+  /**
+   * Gets the number of changes made to this list through its own methods. Two equal values from
+   * the same list mean its contents have not changed in between.
+   *
+   * @return the modification count of this list
+   */
+  public int getModCount() {
+    return modCount;
+  }
+
+  /**
+   * Turns on caching of filter and whole-list statistics results. Repeated calls with the same
+   * parameters are then answered without rescanning the list until it is next modified through
+   * one of its own methods. Each call gets its own copy of a cached list, so a caller may modify,
+   * reverse or edit the records of a returned list freely.
+   *
+   * @param maxEntries the maximum number of results to keep
+   * @param maxRecords the maximum total number of records to keep across all cached lists
+   * @throws IllegalArgumentException if either bound is not positive
+   */
+  public void enableQueryCache(int maxEntries, long maxRecords) {
+    queryCache = new QueryCache(maxEntries, maxRecords);
+  }
+
+  /**
+   * Turns off result caching and discards any cached results.
+   */
+  public void disableQueryCache() {
+    queryCache = null;
+  }
+
+  /**
+   * Gets the result cache of this list, e.g. to read its hit, miss and eviction counters.
+   *
+   * @return the query cache, or null if caching is disabled
+   */
+  public QueryCache getQueryCache() {
+    return queryCache;
+  }
+
+  /**
+   * Runs a query through the result cache if caching is enabled.
+   *
+   * @param <T>   the type of the result
+   * @param key   identifies the query kind and its parameters
+   * @param query computes the result
+   * @return the cached or freshly computed result
+   */
+  private <T> T cached(String key, Supplier<T> query) {
+    if (queryCache == null) {
+      return query.get();
+    }
+    return queryCache.get(key, modCount, query);
+  }
+
+  /**
+   * Returns the year index of this list, building it first if it is missing or stale.
+   *
+   * @return an up-to-date year index
+   */
+  private YearIndex yearIndex() {
+    if (yearIndex == null) {
+      yearIndex = new YearIndex(head, size);
+    }
+    return yearIndex;
+  }
+
+  /**
+   * Gets the year-ordered index of this list's records, building it first if needed. The index is
+   * a read-only view for code that wants to walk the records in year order as arrays; it must not
+   * be used after this list is next modified.
+   *
+   * @return an up-to-date year index
+   */
+  public YearIndex getYearIndex() {
+    return yearIndex();
+  }
+
+  /**
+   * Returns the duration histogram of this list, building it first if it is missing or stale.
+   *
+   * @return an up-to-date duration histogram
+   */
+  private DurationHistogram durationHistogram() {
+    DurationHistogram histogram = durationHistogram;
+    if (histogram == null) {
+      // only published once it is complete
+      histogram = new DurationHistogram();
+      for (DoubleNode cur = head; cur != null; cur = cur.getNext()) {
+        histogram.add(cur.getLakeRecord().getDaysOfIceCover());
+      }
+      durationHistogram = histogram;
+    }
+    return histogram;
+  }
+
+  /**
+   * Returns the whole-list least squares sums, building them first if they are missing or stale.
+   *
+   * @return up-to-date least squares sums
+   */
+  private TrendStats trendStats() {
+    TrendStats stats = trendStats;
+    if (stats == null) {
+      // only published once it is complete
+      stats = new TrendStats();
+      for (DoubleNode cur = head; cur != null; cur = cur.getNext()) {
+        IceDataEntry rec = cur.getLakeRecord();
+        if (rec.getDaysOfIceCover() != IceDataEntry.MISSING) {
+          stats.add(rec.getYear(), rec.getDaysOfIceCover());
+        }
+      }
+      trendStats = stats;
+    }
+    return stats;
+  }
+
+  /**
+   * Returns the trend index of this list, building it first if it is missing or stale.
+   *
+   * @return an up-to-date trend index
+   */
+  private TrendIndex trendIndex() {
+    if (trendIndex == null) {
+      trendIndex = new TrendIndex(yearIndex());
+    }
+    return trendIndex;
+  }
+
+  /**
+   * Returns the rollup cube of this list, building it first if it is missing and rebuilding any
+   * buckets that changed since the last query.
+   *
+   * @return an up-to-date rollup cube
+   */
+  private RollupCube rollupCube() {
+    if (rollupCube == null) {
+      rollupCube = new RollupCube(head);
+    } else if (rollupCube.isDirty()) {
+      rollupCube.clean(yearIndex());
+    }
+    return rollupCube;
+  }
+
+  /**
+   * Returns the range tree of this list, building it first if it is missing or stale.
+   *
+   * @return an up-to-date range tree
+   */
+  private RangeTree rangeTree() {
+    if (rangeTree == null) {
+      rangeTree = new RangeTree(yearIndex());
+    }
+    return rangeTree;
+  }
+
+  /**
+   * Returns the season index of this list, building it first if it is missing or stale.
+   *
+   * @return an up-to-date season index
+   */
+  private SeasonIndex seasonIndex() {
+    if (seasonIndex == null) {
+      seasonIndex = new SeasonIndex(yearIndex());
+    }
+    return seasonIndex;
+  }
+
+  /**
+   * Tells this list that the given record, which it contains, was changed in place (for example by
+   * calling mergeWith() or updateDuration() on a record obtained from get()). The derived range
+   * structures are patched in O(log n) time instead of being rebuilt. The record's winter must not
+   * have changed.
+   *
+   * @param record a record contained in this list whose dates or duration changed
+   */
+  public void refresh(IceDataEntry record) {
+    // the old duration is unknown, so the histogram and trend cannot be patched
+    durationHistogram = null;
+    trendStats = null;
+    refreshIndexes(record);
+  }
+
+  /**
+   * Patches the derived range structures and rollups after the given record changed in place.
+   *
+   * @param record a record contained in this list whose dates or duration changed
+   */
+  private void refreshIndexes(IceDataEntry record) {
+    modCount++;
+    if (rollupCube != null) {
+      rollupCube.markDirty(record.getYear());
+    }
+    if (yearIndex == null) {
+      return;
+    }
+
+    int i = yearIndex.positionOf(record);
+    if (i == -1) {
+      // not a record we know about, so nothing derived from it can be trusted
+      modified();
+      return;
+    }
+
+    yearIndex.refresh(i);
+    trendIndex = null;
+    if (rangeTree != null) {
+      rangeTree.update(i, record);
+    }
+
+    // the dates may have moved to different buckets
+    seasonIndex = null;
   }
 
   /**
@@ -211,6 +523,268 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
       // updates the size of list
       size++;
     }
+
+    if (durationHistogram != null) {
+      durationHistogram.add(record.getDaysOfIceCover());
+    }
+    if (rollupCube != null) {
+      rollupCube.add(record);
+    }
+    if (trendStats != null && record.getDaysOfIceCover() != IceDataEntry.MISSING) {
+      trendStats.add(record.getYear(), record.getDaysOfIceCover());
+    }
+
+    // an in-order append only extends the year index; anything else forces a rebuild
+    modCount++;
+    rangeTree = null;
+    seasonIndex = null;
+    trendIndex = null;
+    if (yearIndex != null && yearIndex.canAppend(record)) {
+      yearIndex.append(record);
+    } else {
+      yearIndex = null;
+    }
+
+    // the detector runs listeners last, so one that throws cannot leave the list half updated
+    if (anomalyDetector != null) {
+      anomalyDetector.observe(record);
+    }
+  }
+
+  /**
+   * Moves every record of another list onto the end of this one in O(1) time by linking this
+   * list's tail to the other list's head. The nodes are moved rather than copied, so the other list
+   * is left empty. The histogram and trend sums are combined in constant time when both lists have
+   * them; the other derived structures are rebuilt on their next query. Moved records are not
+   * checked by an attached anomaly detector.
+   *
+   * @param other the list whose records to move onto this one
+   * @throws IllegalArgumentException if other is null or this list
+   */
+  public void addAll(LakeIceAnalyzer other) {
+    if (other == null || other == this) {
+      throw new IllegalArgumentException("ERROR: cannot add a list to itself or add null");
+    }
+    if (other.head == null) {
+      return;
+    }
+
+    // link this tail to the other head, or take the other head if this list is empty
+    if (head == null) {
+      head = other.head;
+    } else {
+      tail.setNext(other.head);
+      other.head.setPrev(tail);
+    }
+    tail = other.tail;
+    size += other.size;
+
+    // combine the bin counts and sums when both sides have them; otherwise rebuild on demand
+    durationHistogram = durationHistogram != null && other.durationHistogram != null
+        ? durationHistogram.merge(other.durationHistogram) : null;
+    trendStats = trendStats != null && other.trendStats != null
+        ? trendStats.merge(other.trendStats) : null;
+    rollupCube = null;
+    modified();
+
+    // the nodes now belong to this list
+    other.clear();
+  }
+
+  /**
+   * Creates a list holding the records of the given lists in order, moving their nodes in O(1)
+   * time per list. The given lists are left empty.
+   *
+   * @param lists the lists to join, e.g. consecutive decades
+   * @return a new list holding every record of the given lists
+   * @throws IllegalArgumentException if a list is null or given twice
+   */
+  public static LakeIceAnalyzer concat(LakeIceAnalyzer... lists) {
+    LakeIceAnalyzer result = new LakeIceAnalyzer();
+    for (LakeIceAnalyzer list : lists) {
+      result.addAll(list);
+    }
+    return result;
+  }
+
+  /**
+   * Splits this list in two at the first record whose winter starts in or after the given year,
+   * in time proportional to that record's position. This list keeps the records before it, and
+   * the records from it onward are moved, not copied, into the returned list. For a list in
+   * chronological order this separates the winters before year from the rest.
+   *
+   * @param year the first year of the second part
+   * @return a new list holding the moved records, empty if no record starts in or after year
+   */
+  public LakeIceAnalyzer splitAt(int year) {
+    LakeIceAnalyzer rest = new LakeIceAnalyzer();
+
+    // walk from the head to the first node of the second part, counting the nodes kept
+    DoubleNode cur = head;
+    int kept = 0;
+    while (cur != null && cur.getLakeRecord().getYear() < year) {
+      cur = cur.getNext();
+      kept++;
+    }
+    if (cur == null) {
+      return rest;
+    }
+
+    // the second part runs from cur to the old tail
+    rest.head = cur;
+    rest.tail = tail;
+    rest.size = size - kept;
+
+    // cut the link before cur; this list ends at the node before it, if any
+    tail = cur.getPrev();
+    if (tail == null) {
+      head = null;
+    } else {
+      tail.setNext(null);
+      cur.setPrev(null);
+    }
+    size = kept;
+
+    durationHistogram = null;
+    trendStats = null;
+    rollupCube = null;
+    modified();
+    return rest;
+  }
+
+  /**
+   * Reorders the records of this list by the given comparator with a bottom-up merge sort that
+   * relinks the existing nodes, in O(n log n) time and without allocating nodes or arrays. The sort
+   * is stable, so records that compare equal keep their current relative order. The order is from
+   * head to tail, whatever the reversed flag says.
+   *
+   * @param comparator the order to sort the records in
+   * @throws IllegalArgumentException if comparator is null
+   */
+  public void sortBy(Comparator<IceDataEntry> comparator) {
+    if (comparator == null) {
+      throw new IllegalArgumentException("ERROR: comparator must not be null");
+    }
+    if (size < 2) {
+      return;
+    }
+
+    // each pass merges neighbouring sorted runs of width nodes into runs of twice that width,
+    // until a single run covers the whole list
+    DoubleNode list = head;
+    for (int width = 1;; width *= 2) {
+      DoubleNode left = list;
+      DoubleNode last = null;
+      list = null;
+      int merges = 0;
+
+      while (left != null) {
+        merges++;
+
+        // the right run starts width nodes after the left run, or is empty at the end of the list
+        DoubleNode right = left;
+        int leftSize = 0;
+        while (leftSize < width && right != null) {
+          right = right.getNext();
+          leftSize++;
+        }
+        int rightSize = width;
+
+        // append the smaller head of the two runs until both are used up, taking from the left
+        // run on ties to keep the sort stable
+        while (leftSize > 0 || (rightSize > 0 && right != null)) {
+          DoubleNode next;
+          if (leftSize == 0) {
+            next = right;
+            right = right.getNext();
+            rightSize--;
+          } else if (rightSize == 0 || right == null
+              || comparator.compare(left.getLakeRecord(), right.getLakeRecord()) <= 0) {
+            next = left;
+            left = left.getNext();
+            leftSize--;
+          } else {
+            next = right;
+            right = right.getNext();
+            rightSize--;
+          }
+
+          // link the node after the merged output so far, fixing both pointers as we go
+          if (last == null) {
+            list = next;
+          } else {
+            last.setNext(next);
+          }
+          next.setPrev(last);
+          last = next;
+        }
+
+        // the next pair of runs starts where the right run ended
+        left = right;
+      }
+      last.setNext(null);
+
+      if (merges <= 1) {
+        head = list;
+        tail = last;
+        break;
+      }
+    }
+
+    // the histogram, trend and rollups do not depend on order; the positional structures do
+    modified();
+  }
+
+  /**
+   * Sorts the records by days of ice cover, as sortBy() does. Records with a missing duration
+   * come first when ascending and last when descending.
+   *
+   * @param descending true for the longest winters first, false for the shortest first
+   */
+  public void sortByDuration(boolean descending) {
+    sortByKey(KEY_DURATION, descending);
+  }
+
+  /**
+   * Sorts the records by freeze day of the season, as sortBy() does. Records without a valid
+   * freeze date come first when ascending and last when descending.
+   *
+   * @param descending true for the latest freezes first, false for the earliest first
+   */
+  public void sortByFreezeDay(boolean descending) {
+    sortByKey(KEY_FREEZE, descending);
+  }
+
+  /**
+   * Sorts the records by thaw day of the season, as sortBy() does. Records without a valid thaw
+   * date come first when ascending and last when descending.
+   *
+   * @param descending true for the latest thaws first, false for the earliest first
+   */
+  public void sortByThawDay(boolean descending) {
+    sortByKey(KEY_THAW, descending);
+  }
+
+  /**
+   * Sorts the records back into chronological order by the year their winter starts, as sortBy()
+   * does. Records of the same year keep their current relative order.
+   */
+  public void restoreChronological() {
+    sortBy((a, b) -> Integer.compare(a.getYear(), b.getYear()));
+  }
+
+  /**
+   * Sorts the records by one of the ranking keys, comparing the keys as ints.
+   *
+   * @param key        one of KEY_DURATION, KEY_FREEZE or KEY_THAW
+   * @param descending true to put the highest values first
+   */
+  private void sortByKey(int key, boolean descending) {
+    if (descending) {
+      sortBy((a, b) -> Integer.compare(keyOf(b, key), keyOf(a, key)));
+    } else {
+      sortBy((a, b) -> Integer.compare(keyOf(a, key), keyOf(b, key)));
+    }
   }
 
   /**
@@ -291,12 +865,59 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
     if (node != null) {
       removeNode(node);
       size--;
+      if (durationHistogram != null) {
+        durationHistogram.remove(record.getDaysOfIceCover());
+      }
+      if (trendStats != null && record.getDaysOfIceCover() != IceDataEntry.MISSING) {
+        trendStats.remove(record.getYear(), record.getDaysOfIceCover());
+      }
+      if (rollupCube != null) {
+        rollupCube.remove(node.getLakeRecord());
+      }
+      modified();
       return true;
     }
 
     return false;
   }
 
+  /**
+   * Replaces the first record in the list equal to the given one with a corrected record, keeping
+   * its position. The histogram, trend and rollups are patched; the other derived structures are
+   * rebuilt on their next query.
+   *
+   * @param record    the record to be replaced
+   * @param corrected the record to put in its place
+   * @return boolean indicating whether the record was found in the list
+   */
+  public boolean replace(IceDataEntry record, IceDataEntry corrected) {
+    DoubleNode node = find(record);
+    if (node == null) {
+      return false;
+    }
+
+    IceDataEntry old = node.getLakeRecord();
+    if (durationHistogram != null) {
+      durationHistogram.remove(old.getDaysOfIceCover());
+      durationHistogram.add(corrected.getDaysOfIceCover());
+    }
+    if (trendStats != null) {
+      if (old.getDaysOfIceCover() != IceDataEntry.MISSING) {
+        trendStats.remove(old.getYear(), old.getDaysOfIceCover());
+      }
+      if (corrected.getDaysOfIceCover() != IceDataEntry.MISSING) {
+        trendStats.add(corrected.getYear(), corrected.getDaysOfIceCover());
+      }
+    }
+    if (rollupCube != null) {
+      rollupCube.remove(old);
+      rollupCube.add(corrected);
+    }
+    node.setLakeRecord(corrected);
+    modified();
+    return true;
+  }
+
   /**
    * Finds the given record in the list
    * 
@@ -421,11 +1042,25 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
     Iterator<IceDataEntry> iter = iterator(); // create a iterator
 
     // use the iterator to traverse the list and fix all LakeRecords contained in this list with
-    // incorrect durations
+    // incorrect durations, patching the range structures for each record that actually changed
     IceDataEntry rec = null;
     while (iter.hasNext()) {
       rec = iter.next();
+      int before = rec.getDaysOfIceCover();
       rec.updateDuration();
+      if (rec.getDaysOfIceCover() != before) {
+        if (durationHistogram != null) {
+          durationHistogram.remove(before);
+          durationHistogram.add(rec.getDaysOfIceCover());
+        }
+        if (trendStats != null) {
+          if (before != IceDataEntry.MISSING) {
+            trendStats.remove(rec.getYear(), before);
+          }
+          trendStats.add(rec.getYear(), rec.getDaysOfIceCover());
+        }
+        refreshIndexes(rec);
+      }
     }
 
   }
@@ -460,6 +1095,11 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
         // merge next's record into the current node
         cur.getLakeRecord().mergeWith(next.getLakeRecord());
 
+        // the winter's rollup buckets now hold one record fewer with different values
+        if (rollupCube != null) {
+          rollupCube.markDirty(cur.getLakeRecord().getYear());
+        }
+
         // change tail to current node if there is no node after next node
         if (next == tail) {
           tail = next.getPrev();
@@ -481,6 +1121,9 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
       cur = cur.getNext();
     }
 
+    durationHistogram = null;
+    trendStats = null;
+    modified();
   }
 
   /**
@@ -493,6 +1136,17 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
    * @return a new, filtered linked list covering the given range of years.
    */
   public LakeIceAnalyzer filterByYear(int year1, int year2) {
+    return cached("filterByYear:" + year1 + ":" + year2, () -> scanByYear(year1, year2));
+  }
+
+  /**
+   * Scans the list for the records falling between year1 and year2, inclusive.
+   *
+   * @param year1 minimum allowable year for the new list
+   * @param year2 maximum allowable year for the new list
+   * @return a new, filtered linked list covering the given range of years
+   */
+  private LakeIceAnalyzer scanByYear(int year1, int year2) {
     // list to store records falling between year1 and year2
     ArrayList<IceDataEntry> records = new ArrayList<>();
 
@@ -523,6 +1177,16 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
    * @return a new linked list containing only nodes from the given year
    */
   public LakeIceAnalyzer filterByYear(int year) {
+    return cached("filterByYear:" + year, () -> scanByYear(year));
+  }
+
+  /**
+   * Scans the list for the records from the given year.
+   *
+   * @param year the single year covered by the new list
+   * @return a new linked list containing only nodes from the given year
+   */
+  private LakeIceAnalyzer scanByYear(int year) {
     // list to store records falling between year1 and year2
     ArrayList<IceDataEntry> records = new ArrayList<>();
 
@@ -554,6 +1218,17 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
    * @return a new list containing only records with duration in the given range
    */
   public LakeIceAnalyzer filterByDuration(int low, int high) {
+    return cached("filterByDuration:" + low + ":" + high, () -> scanByDuration(low, high));
+  }
+
+  /**
+   * Scans the list for the records whose duration is between low and high, inclusive.
+   *
+   * @param low  The minimum allowed duration for the new list
+   * @param high The maximum allowed duration for the new list
+   * @return a new list containing only records with duration in the given range
+   */
+  private LakeIceAnalyzer scanByDuration(int low, int high) {
     // list to store records falling between year1 and year2
     ArrayList<IceDataEntry> records = new ArrayList<>();
 
@@ -576,6 +1251,92 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
     return rt;
   }
 
+  /**
+   * Returns a new linked list containing all of the records that froze between the given dates,
+   * inclusive, e.g. filterByFreezeWindow("August 1", "December 9") for winters that froze before
+   * December 10. The records are looked up in the season index rather than by parsing every date.
+   * The returned list does not contain any references to nodes or records from the original list,
+   * and the relative ordering of nodes does not change.
+   *
+   * @param earliest the first allowable freeze date, e.g. "November 15"
+   * @param latest   the last allowable freeze date, e.g. "December 9"
+   * @return a new list containing only records that froze in the given window
+   * @throws IllegalArgumentException if either date is not a valid date
+   */
+  public LakeIceAnalyzer filterByFreezeWindow(String earliest, String latest) {
+    return cached("filterByFreezeWindow:" + earliest + ":" + latest,
+        () -> scanByFreezeWindow(earliest, latest));
+  }
+
+  /**
+   * Looks up the records that froze between the given dates in the season index.
+   *
+   * @param earliest the first allowable freeze date
+   * @param latest   the last allowable freeze date
+   * @return a new list containing only records that froze in the given window
+   */
+  private LakeIceAnalyzer scanByFreezeWindow(String earliest, String latest) {
+    return collectPositions(seasonIndex().frozeBetween(toDayOfSeason(earliest),
+        toDayOfSeason(latest)));
+  }
+
+  /**
+   * Returns a new linked list containing all of the records that thawed between the given dates,
+   * inclusive, e.g. filterByThawWindow("April 2", "July 31") for winters that thawed after April 1.
+   * The returned list does not contain any references to nodes or records from the original list,
+   * and the relative ordering of nodes does not change.
+   *
+   * @param earliest the first allowable thaw date, e.g. "April 2"
+   * @param latest   the last allowable thaw date, e.g. "July 31"
+   * @return a new list containing only records that thawed in the given window
+   * @throws IllegalArgumentException if either date is not a valid date
+   */
+  public LakeIceAnalyzer filterByThawWindow(String earliest, String latest) {
+    return cached("filterByThawWindow:" + earliest + ":" + latest,
+        () -> scanByThawWindow(earliest, latest));
+  }
+
+  /**
+   * Looks up the records that thawed between the given dates in the season index.
+   *
+   * @param earliest the first allowable thaw date
+   * @param latest   the last allowable thaw date
+   * @return a new list containing only records that thawed in the given window
+   */
+  private LakeIceAnalyzer scanByThawWindow(String earliest, String latest) {
+    return collectPositions(seasonIndex().thawedBetween(toDayOfSeason(earliest),
+        toDayOfSeason(latest)));
+  }
+
+  /**
+   * Converts a window boundary into a day of the season.
+   *
+   * @param date a date such as "December 10"
+   * @return the day of the season
+   * @throws IllegalArgumentException if the date is not valid
+   */
+  private static int toDayOfSeason(String date) {
+    int day = DateUtil.dayOfSeason(date);
+    if (day == -1) {
+      throw new IllegalArgumentException("ERROR: invalid date: " + date);
+    }
+    return day;
+  }
+
+  /**
+   * Builds a new list from copies of the records at the given year-index positions.
+   *
+   * @param positions ascending year-index positions
+   * @return a new list containing copies of those records
+   */
+  private LakeIceAnalyzer collectPositions(int[] positions) {
+    ArrayList<IceDataEntry> records = new ArrayList<>();
+    for (int i : positions) {
+      records.add(yearIndex().getRecord(i).copy());
+    }
+    return new LakeIceAnalyzer(records);
+  }
+
 
   /**
    * Finds the latest date at which the lake thawed.
@@ -583,6 +1344,15 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
    * @return The date of the latest thaw, e.g. "April 15"
    */
   public String getLatestThaw() {
+    return cached("getLatestThaw", () -> scanLatestThaw());
+  }
+
+  /**
+   * Scans the list for the latest thaw date.
+   *
+   * @return The date of the latest thaw
+   */
+  private String scanLatestThaw() {
 
     Iterator<IceDataEntry> iter = iterator(); // create a iterator
 
@@ -608,6 +1378,15 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
    * @return The day of the earliest freeze, e.g. "December 2"
    */
   public String getEarliestFreeze() {
+    return cached("getEarliestFreeze", () -> scanEarliestFreeze());
+  }
+
+  /**
+   * Scans the list for the earliest freeze date.
+   *
+   * @return The day of the earliest freeze
+   */
+  private String scanEarliestFreeze() {
 
     Iterator<IceDataEntry> iter = iterator(); // create a iterator
 
@@ -634,6 +1413,15 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
    * @return The average number of days of ice cover across all nodes, or 0 if list is empty.
    */
   public float getAverageFreezeDuration() {
+    return cached("getAverageFreezeDuration", () -> scanAverageFreezeDuration());
+  }
+
+  /**
+   * Scans the list for the average number of days of ice cover.
+   *
+   * @return The average number of days of ice cover, or 0 if list is empty.
+   */
+  private float scanAverageFreezeDuration() {
 
     if (head == null) {
       return 0;
@@ -654,12 +1442,437 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
 
   }
 
+  /**
+   * Finds the total number of days of ice cover over the winters starting between year1 and year2,
+   * inclusive, in O(log n) time using the year index.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the total days of ice cover in the range, or 0 if no winter falls in it
+   */
+  public long getTotalFreezeDuration(int year1, int year2) {
+    return yearIndex().rangeSum(year1, year2);
+  }
+
+  /**
+   * Counts the records whose winter starts between year1 and year2, inclusive, in O(log n) time
+   * using the year index.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the number of records in the range
+   */
+  public int countByYear(int year1, int year2) {
+    return yearIndex().rangeCount(year1, year2);
+  }
+
+  /**
+   * Finds the average number of days of ice cover over the winters starting between year1 and
+   * year2, inclusive. Unlike filterByYear(year1, year2).getAverageFreezeDuration(), this copies
+   * nothing and runs in O(log n) time once the year index is built.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the average days of ice cover in the range, or 0 if no winter falls in it
+   */
+  public float getAverageFreezeDuration(int year1, int year2) {
+    YearIndex index = yearIndex();
+    int from = index.lowerBound(year1);
+    int to = index.upperBound(year2);
+    if (to <= from) {
+      return 0;
+    }
+    return (float) index.sumBetween(from, to) / (to - from);
+  }
+
+  /**
+   * Finds the minimum number of days of ice cover over the winters starting between year1 and
+   * year2, inclusive, in O(log n) time using the range tree.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the minimum days of ice cover in the range, or 0 if no winter falls in it
+   */
+  public int getMinFreezeDuration(int year1, int year2) {
+    YearIndex index = yearIndex();
+    int from = index.lowerBound(year1);
+    int to = index.upperBound(year2);
+    return to <= from ? 0 : rangeTree().minDays(from, to);
+  }
+
+  /**
+   * Finds the maximum number of days of ice cover over the winters starting between year1 and
+   * year2, inclusive, in O(log n) time using the range tree.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the maximum days of ice cover in the range, or 0 if no winter falls in it
+   */
+  public int getMaxFreezeDuration(int year1, int year2) {
+    YearIndex index = yearIndex();
+    int from = index.lowerBound(year1);
+    int to = index.upperBound(year2);
+    return to <= from ? 0 : rangeTree().maxDays(from, to);
+  }
+
+  /**
+   * Finds the earliest freeze date over the winters starting between year1 and year2, inclusive,
+   * in O(log n) time using the range tree.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the earliest freeze date, e.g. "December 2", or null if there is none in the range
+   */
+  public String getEarliestFreeze(int year1, int year2) {
+    YearIndex index = yearIndex();
+    int from = index.lowerBound(year1);
+    int to = index.upperBound(year2);
+    return to <= from ? null : DateUtil.dateOfSeason(rangeTree().earliestFreeze(from, to));
+  }
+
+  /**
+   * Finds the latest thaw date over the winters starting between year1 and year2, inclusive, in
+   * O(log n) time using the range tree.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the latest thaw date, e.g. "April 15", or null if there is none in the range
+   */
+  public String getLatestThaw(int year1, int year2) {
+    YearIndex index = yearIndex();
+    int from = index.lowerBound(year1);
+    int to = index.upperBound(year2);
+    return to <= from ? null : DateUtil.dateOfSeason(rangeTree().latestThaw(from, to));
+  }
+
+  /**
+   * Computes all summary statistics of the winters starting between year1 and year2, inclusive,
+   * in O(log n) time using the year index and range tree.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the summary of the range
+   */
+  public RangeSummary summarizeRange(int year1, int year2) {
+    YearIndex index = yearIndex();
+    return summarize(year1, year2, index.lowerBound(year1), index.upperBound(year2));
+  }
+
+  /**
+   * Summarizes the decade containing the given year (e.g. 1950 to 1959 for 1953) from a
+   * precomputed rollup bucket.
+   *
+   * @param year any year in the decade
+   * @return the summary of the decade
+   */
+  public RangeSummary getDecadeSummary(int year) {
+    return rollupCube().summary(year, RollupCube.DECADE);
+  }
+
+  /**
+   * Summarizes the century containing the given year (e.g. 1900 to 1999 for 1953) from a
+   * precomputed rollup bucket.
+   *
+   * @param year any year in the century
+   * @return the summary of the century
+   */
+  public RangeSummary getCenturySummary(int year) {
+    return rollupCube().summary(year, RollupCube.CENTURY);
+  }
+
+  /**
+   * Summarizes every decade from the one containing year1 to the one containing year2, reading
+   * one rollup bucket per decade.
+   *
+   * @param year1 a year in the first decade
+   * @param year2 a year in the last decade
+   * @return the summary of each decade in order, including decades without records
+   */
+  public ArrayList<RangeSummary> getDecadeSummaries(int year1, int year2) {
+    return rollupCube().summaries(year1, year2, RollupCube.DECADE);
+  }
+
+  /**
+   * Computes the summary statistics of many year ranges at once. Rather than searching for each
+   * range separately, all of the range endpoints are sorted and resolved in a single sweep over
+   * the year index, so q ranges cost O(n + q log q) plus O(log n) per range for the extremes.
+   *
+   * @param year1s the first year of each range
+   * @param year2s the last year of each range, in the same order as year1s
+   * @return the summary of each range, in the same order as the input
+   * @throws IllegalArgumentException if the two arrays have different lengths
+   */
+  public RangeSummary[] summarizeRanges(int[] year1s, int[] year2s) {
+    if (year1s.length != year2s.length) {
+      throw new IllegalArgumentException("ERROR: year1s and year2s must have the same length");
+    }
+
+    YearIndex index = yearIndex();
+    int q = year1s.length;
+
+    // every bound is "first position whose year is at least t"; pack each target year with the
+    // slot its answer belongs in, so sorting the packed values sorts the targets
+    long[] targets = new long[2 * q];
+    for (int i = 0; i < q; i++) {
+      int upper = year2s[i] == Integer.MAX_VALUE ? year2s[i] : year2s[i] + 1;
+      targets[2 * i] = ((long) year1s[i] << 32) | (2 * i);
+      targets[2 * i + 1] = ((long) upper << 32) | (2 * i + 1);
+    }
+    Arrays.sort(targets);
+
+    // sweep the year index once, resolving the targets in ascending order
+    int[] bounds = new int[2 * q];
+    int pos = 0;
+    for (long target : targets) {
+      int year = (int) (target >> 32);
+      while (pos < index.size() && index.getYear(pos) < year) {
+        pos++;
+      }
+      bounds[(int) target] = pos;
+    }
+
+    RangeSummary[] summaries = new RangeSummary[q];
+    for (int i = 0; i < q; i++) {
+      summaries[i] = summarize(year1s[i], year2s[i], bounds[2 * i], bounds[2 * i + 1]);
+    }
+    return summaries;
+  }
+
+  /**
+   * Finds the given percentile of the days of ice cover, e.g. 10, 50 or 90 for P10, the median or
+   * P90. The answer comes from a histogram that add and remove keep up to date, so no copy of the
+   * list is sorted. Records with a missing duration are ignored.
+   *
+   * @param p the percentile between 0 and 100
+   * @return the nearest-rank percentile of the days of ice cover, or -1 if no record has a
+   *         duration
+   * @throws IllegalArgumentException if p is outside 0 to 100
+   */
+  public int getFreezeDurationPercentile(double p) {
+    return durationHistogram().percentile(p);
+  }
+
+  /**
+   * Finds the median days of ice cover.
+   *
+   * @return the median, or -1 if no record has a duration
+   */
+  public int getMedianFreezeDuration() {
+    return getFreezeDurationPercentile(50);
+  }
+
+  /**
+   * Gets a snapshot of the histogram of days of ice cover, e.g. to merge with other lakes' or to
+   * group into coarser bins.
+   *
+   * @return a new histogram with this list's counts
+   */
+  public DurationHistogram getDurationHistogram() {
+    return durationHistogram().copy();
+  }
+
+  /**
+   * Gets the least squares trend of days of ice cover against year over the whole list. The sums
+   * behind it are kept up to date by add, remove and updateDurations, so this is O(1). Records
+   * with a missing duration are left out.
+   *
+   * @return a snapshot of the fit; see TrendStats.getDaysPerDecade()
+   */
+  public TrendStats getTrend() {
+    return trendStats().copy();
+  }
+
+  /**
+   * Gets the least squares trend of days of ice cover against year over the winters starting
+   * between year1 and year2, inclusive, in O(log n) time from prefix sums.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the fit of the range
+   */
+  public TrendStats getTrend(int year1, int year2) {
+    return trendIndex().range(year1, year2);
+  }
+
+  /**
+   * Computes the Theil-Sen trend (the median slope between pairs of winters) of days of ice cover
+   * over the winters starting between year1 and year2, inclusive. It is less sensitive to
+   * outlying winters than getTrend() but takes O(m^2 log m) time for m winters.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the slope in days per year, or NaN if the range has fewer than two distinct years
+   * @throws IllegalArgumentException if the range holds too many winters to pair up
+   */
+  public double getTheilSenSlope(int year1, int year2) {
+    return trendIndex().theilSenSlope(year1, year2);
+  }
+
+  /**
+   * Computes the moving mean, minimum and maximum days of ice cover over every window of the given
+   * number of consecutive winters (e.g. 30 for climate normals, 10 for a decadal moving average),
+   * in a single O(n) pass instead of one filterByYear copy per window.
+   *
+   * @param window     the number of winters in each window
+   * @param withStdDev whether to compute the moving standard deviation as well
+   * @return the statistics of every window position, in year order
+   * @throws IllegalArgumentException if window is not positive
+   */
+  public RollingStats getRollingStats(int window, boolean withStdDev) {
+    return new RollingStats(yearIndex(), window, withStdDev);
+  }
+
+  /**
+   * Finds the k longest or shortest winters using a bounded heap, in O(n log k) time without
+   * sorting or copying the list. Records with a missing duration are ignored.
+   *
+   * @param k       the number of records to return
+   * @param longest true for the longest winters, false for the shortest
+   * @return up to k records from this list, best first; ties are broken by earlier year
+   * @throws IllegalArgumentException if k is negative
+   */
+  public ArrayList<IceDataEntry> topKByDuration(int k, boolean longest) {
+    return topK(k, KEY_DURATION, longest);
+  }
+
+  /**
+   * Finds the k winters with the earliest or latest freeze dates using a bounded heap, in O(n log
+   * k) time. Records without a valid freeze date are ignored.
+   *
+   * @param k        the number of records to return
+   * @param earliest true for the earliest freezes, false for the latest
+   * @return up to k records from this list, best first; ties are broken by earlier year
+   * @throws IllegalArgumentException if k is negative
+   */
+  public ArrayList<IceDataEntry> topKByFreeze(int k, boolean earliest) {
+    return topK(k, KEY_FREEZE, !earliest);
+  }
+
+  /**
+   * Finds the k winters with the latest or earliest thaw dates using a bounded heap, in O(n log k)
+   * time. Records without a valid thaw date are ignored.
+   *
+   * @param k      the number of records to return
+   * @param latest true for the latest thaws, false for the earliest
+   * @return up to k records from this list, best first; ties are broken by earlier year
+   * @throws IllegalArgumentException if k is negative
+   */
+  public ArrayList<IceDataEntry> topKByThaw(int k, boolean latest) {
+    return topK(k, KEY_THAW, latest);
+  }
+
+  /**
+   * Selects the k records with the highest (or lowest) value of the given key. Large lists are
+   * split into segments whose heaps are built in parallel and then merged.
+   *
+   * @param k       the number of records to return
+   * @param key     one of KEY_DURATION, KEY_FREEZE or KEY_THAW
+   * @param highest true to keep the highest values, false to keep the lowest
+   * @return up to k records, best first
+   */
+  private ArrayList<IceDataEntry> topK(int k, int key, boolean highest) {
+    YearIndex index = yearIndex();
+    int n = index.size();
+
+    TopK best;
+    if (n < PARALLEL_THRESHOLD) {
+      best = scanTopK(index, k, key, highest, 0, n);
+    } else {
+      int segments = ForkJoinPool.getCommonPoolParallelism() * 4;
+      int length = (n + segments - 1) / segments;
+      best = IntStream.range(0, segments).parallel()
+          .mapToObj(seg -> scanTopK(index, k, key, highest, Math.min(n, seg * length),
+              Math.min(n, (seg + 1) * length)))
+          .reduce(TopK::merge).orElseGet(() -> new TopK(k));
+    }
+
+    // unpack the winning positions back into records
+    ArrayList<IceDataEntry> result = new ArrayList<>();
+    for (long packed : best.toSortedArray()) {
+      result.add(index.getRecord(TopK.position(packed)));
+    }
+    return result;
+  }
+
+  /**
+   * Builds a bounded heap over the year-index positions from (inclusive) to (exclusive).
+   *
+   * @param index   the year index to scan
+   * @param k       the number of records to keep
+   * @param key     one of KEY_DURATION, KEY_FREEZE or KEY_THAW
+   * @param highest true to keep the highest values, false to keep the lowest
+   * @param from    the first position to scan
+   * @param to      one past the last position to scan
+   * @return the heap of the best k positions in the segment
+   */
+  private static TopK scanTopK(YearIndex index, int k, int key, boolean highest, int from,
+      int to) {
+    TopK heap = new TopK(k);
+    for (int i = from; i < to; i++) {
+      int value = keyOf(index.getRecord(i), key);
+
+      // both missing durations and invalid dates are reported as -1
+      if (value < 0) {
+        continue;
+      }
+      heap.offer(TopK.pack(highest ? value : -value, i));
+    }
+    return heap;
+  }
+
+  /**
+   * Gets the value of a ranking key for one record.
+   *
+   * @param rec the record
+   * @param key one of KEY_DURATION, KEY_FREEZE or KEY_THAW
+   * @return the value of the key, or -1 if the duration is missing or the date is invalid
+   */
+  private static int keyOf(IceDataEntry rec, int key) {
+    if (key == KEY_DURATION) {
+      return rec.getDaysOfIceCover();
+    } else if (key == KEY_FREEZE) {
+      return DateUtil.dayOfSeason(rec.getFreezeDate());
+    } else {
+      return DateUtil.dayOfSeason(rec.getThawDate());
+    }
+  }
+
+  /**
+   * Builds the summary of the records at year-index positions from (inclusive) to (exclusive).
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @param from  the first position in the range
+   * @param to    one past the last position in the range
+   * @return the summary of the range
+   */
+  private RangeSummary summarize(int year1, int year2, int from, int to) {
+    if (to <= from) {
+      return new RangeSummary(year1, year2, 0, 0, 0, 0, null, null);
+    }
+
+    RangeTree tree = rangeTree();
+    return new RangeSummary(year1, year2, to - from, yearIndex().sumBetween(from, to),
+        tree.minDays(from, to), tree.maxDays(from, to),
+        DateUtil.dateOfSeason(tree.earliestFreeze(from, to)),
+        DateUtil.dateOfSeason(tree.latestThaw(from, to)));
+  }
+
   /**
    * Finds the maximum number of days of ice cover across the entire list
    * 
    * @return The maximum number of days of ice cover across all nodes, or 0 if the list is empty.
    */
   public int getMaxFreezeDuration() {
+    return cached("getMaxFreezeDuration", () -> scanMaxFreezeDuration());
+  }
+
+  /**
+   * Scans the list for the maximum number of days of ice cover.
+   *
+   * @return The maximum number of days of ice cover, or 0 if the list is empty.
+   */
+  private int scanMaxFreezeDuration() {
     if (head == null) {
       return 0;
     }
@@ -691,6 +1904,15 @@ public class LakeIceAnalyzer implements ListADT<IceDataEntry>, Iterable<IceDataE
    * @return The minimum number of days of ice cover across all nodes, or 0 if the list is empty.
    */
   public int getMinFreezeDuration() {
+    return cached("getMinFreezeDuration", () -> scanMinFreezeDuration());
+  }
+
+  /**
+   * Scans the list for the minimum number of days of ice cover.
+   *
+   * @return The minimum number of days of ice cover, or 0 if the list is empty.
+   */
+  private int scanMinFreezeDuration() {
     if (head == null) {
       return 0;
     }
@@ -0,0 +1,123 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Simple static class for comparing lakes winter by winter.
+ *
+ * Lakes are aligned with a merge join over their year indexes, which are already in year order,
+ * so comparing two lakes with n and m winters costs O(n + m) instead of a nested loop, and all of
+ * the paired statistics are accumulated in the same pass.
+ */
+public class LakeJoin {
+
+  /**
+   * Compares two lakes over the winters they have in common. If a lake has several records for
+   * the same winter, they are paired with the other lake's records for that winter in order.
+   *
+   * @param first  the first lake
+   * @param second the second lake
+   * @return the paired statistics of the two lakes
+   */
+  public static PairedStats join(LakeIceAnalyzer first, LakeIceAnalyzer second) {
+    return join(first.getYearIndex(), second.getYearIndex());
+  }
+
+  /**
+   * Merge-joins two year indexes and accumulates the paired statistics in one pass.
+   *
+   * @param a the first lake's year index
+   * @param b the second lake's year index
+   * @return the paired statistics
+   */
+  private static PairedStats join(YearIndex a, YearIndex b) {
+    int count = 0;
+    int freezePairs = 0;
+    long freezeDifference = 0;
+    int n = 0;
+    double sumX = 0;
+    double sumY = 0;
+    double sumXX = 0;
+    double sumYY = 0;
+    double sumXY = 0;
+
+    int i = 0;
+    int j = 0;
+    while (i < a.size() && j < b.size()) {
+      // advance whichever side is behind until the winters line up
+      if (a.getYear(i) < b.getYear(j)) {
+        i++;
+      } else if (a.getYear(i) > b.getYear(j)) {
+        j++;
+      } else {
+        IceDataEntry x = a.getRecord(i++);
+        IceDataEntry y = b.getRecord(j++);
+        count++;
+
+        int freezeX = DateUtil.dayOfSeason(x.getFreezeDate());
+        int freezeY = DateUtil.dayOfSeason(y.getFreezeDate());
+        if (freezeX != -1 && freezeY != -1) {
+          freezeDifference += freezeX - freezeY;
+          freezePairs++;
+        }
+
+        int daysX = x.getDaysOfIceCover();
+        int daysY = y.getDaysOfIceCover();
+        if (daysX != IceDataEntry.MISSING && daysY != IceDataEntry.MISSING) {
+          n++;
+          sumX += daysX;
+          sumY += daysY;
+          sumXX += (double) daysX * daysX;
+          sumYY += (double) daysY * daysY;
+          sumXY += (double) daysX * daysY;
+        }
+      }
+    }
+
+    double meanDifference = freezePairs == 0 ? Double.NaN : (double) freezeDifference / freezePairs;
+    double covariance = n * sumXY - sumX * sumY;
+    double varianceX = n * sumXX - sumX * sumX;
+    double varianceY = n * sumYY - sumY * sumY;
+    double correlation = (n < 2 || varianceX <= 0 || varianceY <= 0) ? Double.NaN
+        : covariance / Math.sqrt(varianceX * varianceY);
+    return new PairedStats(count, meanDifference, correlation);
+  }
+
+  /**
+   * Computes the Pearson correlation of days of ice cover between every pair of lakes, with the
+   * pairs joined in parallel on the common ForkJoinPool.
+   *
+   * @param lakes the lakes to compare
+   * @return a symmetric matrix where entry [i][j] is the correlation of lakes i and j (1 on the
+   *         diagonal, NaN where it is undefined)
+   */
+  public static double[][] correlationMatrix(LakeIceAnalyzer... lakes) {
+    int n = lakes.length;
+
+    // build every index up front, since a lake's index must not be built by two threads at once
+    YearIndex[] indexes = new YearIndex[n];
+    for (int i = 0; i < n; i++) {
+      indexes[i] = lakes[i].getYearIndex();
+    }
+
+    double[][] matrix = new double[n][n];
+    int pairs = n * (n - 1) / 2;
+    ForkJoinPool.commonPool().submit(() -> IntStream.range(0, pairs).parallel().forEach(p -> {
+      // recover (i, j) with i < j from the pair number p
+      int i = 0;
+      int rest = p;
+      while (rest >= n - 1 - i) {
+        rest -= n - 1 - i;
+        i++;
+      }
+      int j = i + 1 + rest;
+      double r = join(indexes[i], indexes[j]).getCorrelation();
+      matrix[i][j] = r;
+      matrix[j][i] = r;
+    })).join();
+
+    for (int i = 0; i < n; i++) {
+      matrix[i][i] = 1;
+    }
+    return matrix;
+  }
+}
@@ -24,37 +24,8 @@ public class LakeRecordReader {
       String data;
       try {
         while ((data = fileIn.nextLine()) != null) {
-          String[] fields = data.split(",");
-
-          // Expect exactly 4 columns based on the provided CSV format:
-          // 1) Winter
-          // 2) Freeze-Over Date
-          // 3) Thaw Date
-          // 4) Days of Ice Cover
-          if (fields.length == 4) {
-            String winter = removeSurroundingQuotes(fields[0]).trim();
-            String freezeDate = removeSurroundingQuotes(fields[1]).trim();
-            String thawDate = removeSurroundingQuotes(fields[2]).trim();
-            String daysOfIceCoverStr = removeSurroundingQuotes(fields[3]).trim();
-
-            // Convert incorrectly formatted freeze/thaw to null
-            if (freezeDate.split(" ").length != 2) {
-              freezeDate = null;
-            }
-
-            if (thawDate.split(" ").length != 2) {
-              thawDate = null;
-            }
-
-            int daysOfIceCover = IceDataEntry.MISSING; // default value
-            if (!daysOfIceCoverStr.isEmpty()) {
-              try {
-                daysOfIceCover = Integer.parseInt(daysOfIceCoverStr);
-              } catch (NumberFormatException e) {}
-            }
-
-            // Create and add the LakeRecord to the list
-            IceDataEntry record = new IceDataEntry(winter, freezeDate, thawDate, daysOfIceCover);
+          IceDataEntry record = parseRecord(data);
+          if (record != null) {
             records.add(record);
           }
         }
@@ -69,6 +40,47 @@ public class LakeRecordReader {
 
 
 
+  /**
+   * Parses one data line of a lake csv file.
+   *
+   * @param data a line of the file, without its line terminator
+   * @return the record on the line, or null if the line does not have exactly 4 columns
+   */
+  public static IceDataEntry parseRecord(String data) {
+    String[] fields = data.split(",");
+
+    // Expect exactly 4 columns based on the provided CSV format:
+    // 1) Winter
+    // 2) Freeze-Over Date
+    // 3) Thaw Date
+    // 4) Days of Ice Cover
+    if (fields.length != 4) {
+      return null;
+    }
+    String winter = removeSurroundingQuotes(fields[0]).trim();
+    String freezeDate = removeSurroundingQuotes(fields[1]).trim();
+    String thawDate = removeSurroundingQuotes(fields[2]).trim();
+    String daysOfIceCoverStr = removeSurroundingQuotes(fields[3]).trim();
+
+    // Convert incorrectly formatted freeze/thaw to null
+    if (freezeDate.split(" ").length != 2) {
+      freezeDate = null;
+    }
+
+    if (thawDate.split(" ").length != 2) {
+      thawDate = null;
+    }
+
+    int daysOfIceCover = IceDataEntry.MISSING; // default value
+    if (!daysOfIceCoverStr.isEmpty()) {
+      try {
+        daysOfIceCover = Integer.parseInt(daysOfIceCoverStr);
+      } catch (NumberFormatException e) {}
+    }
+
+    return new IceDataEntry(winter, freezeDate, thawDate, daysOfIceCover);
+  }
+
   /**
    * Removes leading and trailing quotes if they exist.
    *
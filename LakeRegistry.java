@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * A collection of LakeIceAnalyzers keyed by lake id, with queries that fan out over every lake in
+ * parallel on a ForkJoinPool and combine the per-lake answers.
+ *
+ * Per-lake answers come from the analyzers' range structures, so a query over thousands of lakes
+ * holds only a few numbers per worker rather than any copied records. Those structures and the
+ * analyzers' result caches are built lazily by queries, so each lake is queried while holding its
+ * monitor: concurrent registry queries that reach the same lake take turns on it, and code that
+ * modifies a registered lake while queries may run must synchronize on it too, as LakeTailReader
+ * does.
+ */
+public class LakeRegistry {
+  /**
+   * The registered lakes, keyed by id
+   */
+  private final ConcurrentHashMap<String, LakeIceAnalyzer> lakes = new ConcurrentHashMap<>();
+  /**
+   * The pool that runs fan-out queries
+   */
+  private final ForkJoinPool pool;
+
+  /**
+   * Creates an empty registry that runs its queries on the common ForkJoinPool.
+   */
+  public LakeRegistry() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates an empty registry that runs its queries on the given pool.
+   *
+   * @param pool the pool to run fan-out queries on
+   */
+  public LakeRegistry(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Adds a lake to the registry, replacing any lake with the same id.
+   *
+   * @param lakeId   the id of the lake
+   * @param analyzer the records of the lake
+   * @return the lake previously registered under lakeId, or null if there was none
+   * @throws IllegalArgumentException if lakeId or analyzer is null
+   */
+  public LakeIceAnalyzer register(String lakeId, LakeIceAnalyzer analyzer) {
+    if (lakeId == null || analyzer == null) {
+      throw new IllegalArgumentException("ERROR: lake id and analyzer must not be null");
+    }
+    return lakes.put(lakeId, analyzer);
+  }
+
+  /**
+   * Removes a lake from the registry.
+   *
+   * @param lakeId the id of the lake
+   * @return the removed lake, or null if there was none
+   */
+  public LakeIceAnalyzer unregister(String lakeId) {
+    return lakes.remove(lakeId);
+  }
+
+  /**
+   * Gets the records of a lake.
+   *
+   * @param lakeId the id of the lake
+   * @return the lake's analyzer, or null if there is none
+   */
+  public LakeIceAnalyzer get(String lakeId) {
+    return lakes.get(lakeId);
+  }
+
+  /**
+   * Gets the number of registered lakes.
+   *
+   * @return the number of lakes
+   */
+  public int size() {
+    return lakes.size();
+  }
+
+  /**
+   * Gets the ids of all registered lakes.
+   *
+   * @return a new list of lake ids
+   */
+  public ArrayList<String> getLakeIds() {
+    return new ArrayList<>(lakes.keySet());
+  }
+
+  /**
+   * Finds the total days of ice cover over the winters starting between year1 and year2,
+   * inclusive, summed across every lake.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the total days of ice cover across all lakes
+   */
+  public long getTotalFreezeDuration(int year1, int year2) {
+    return pool.submit(() -> lakes.values().parallelStream()
+        .mapToLong(lake -> {
+          synchronized (lake) {
+            return lake.getTotalFreezeDuration(year1, year2);
+          }
+        }).sum()).join();
+  }
+
+  /**
+   * Counts the winters starting between year1 and year2, inclusive, across every lake.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the number of records in the range across all lakes
+   */
+  public long countByYear(int year1, int year2) {
+    return pool.submit(() -> lakes.values().parallelStream()
+        .mapToLong(lake -> {
+          synchronized (lake) {
+            return lake.countByYear(year1, year2);
+          }
+        }).sum()).join();
+  }
+
+  /**
+   * Finds the average days of ice cover per winter over the winters starting between year1 and
+   * year2, inclusive, across every lake. Each lake contributes its range total and count, so
+   * lakes with more winters in the range carry more weight.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the average days of ice cover, or 0 if no lake has a winter in the range
+   */
+  public float getAverageFreezeDuration(int year1, int year2) {
+    long[] totals = pool.submit(() -> lakes.values().parallelStream()
+        .map(lake -> {
+          synchronized (lake) {
+            return new long[] {lake.getTotalFreezeDuration(year1, year2),
+                lake.countByYear(year1, year2)};
+          }
+        })
+        .reduce(new long[2], (a, b) -> new long[] {a[0] + b[0], a[1] + b[1]})).join();
+    return totals[1] == 0 ? 0 : (float) totals[0] / totals[1];
+  }
+
+  /**
+   * Builds the histogram of days of ice cover across every lake by merging snapshots of the
+   * per-lake histograms in parallel.
+   *
+   * @return a new histogram covering all lakes
+   */
+  public DurationHistogram getDurationHistogram() {
+    return pool.submit(() -> lakes.values().parallelStream()
+        .map(lake -> {
+          synchronized (lake) {
+            return lake.getDurationHistogram();
+          }
+        })
+        .reduce(DurationHistogram::merge).orElseGet(DurationHistogram::new)).join();
+  }
+
+  /**
+   * Summarizes the winters starting between year1 and year2, inclusive, for every lake.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the summary of each lake, keyed by lake id
+   */
+  public Map<String, RangeSummary> summarizeEach(int year1, int year2) {
+    ConcurrentHashMap<String, RangeSummary> summaries = new ConcurrentHashMap<>();
+    pool.submit(() -> lakes.entrySet().parallelStream().forEach(e -> {
+      LakeIceAnalyzer lake = e.getValue();
+      synchronized (lake) {
+        summaries.put(e.getKey(), lake.summarizeRange(year1, year2));
+      }
+    })).join();
+    return new HashMap<>(summaries);
+  }
+
+  /**
+   * Finds the k lakes that froze earliest in the winter starting in the given year. Each worker
+   * keeps only a bounded heap of k candidates, which are merged at the end.
+   *
+   * @param year the starting year of the winter
+   * @param k    the number of lakes to return
+   * @return up to k lake ids, earliest freeze first; lakes without a freeze date that winter are
+   *         ignored
+   * @throws IllegalArgumentException if k is negative
+   */
+  public ArrayList<String> getEarliestFreezeLakes(int year, int k) {
+    String[] ids = lakes.keySet().toArray(new String[0]);
+    int segments = Math.max(1, Math.min(ids.length, pool.getParallelism() * 4));
+    int length = (ids.length + segments - 1) / segments;
+
+    // each segment of lakes fills its own bounded heap; the heaps are merged pairwise
+    TopK best = pool.submit(() -> IntStream.range(0, segments).parallel().mapToObj(seg -> {
+      TopK heap = new TopK(k);
+      for (int i = seg * length; i < Math.min(ids.length, (seg + 1) * length); i++) {
+        LakeIceAnalyzer lake = lakes.get(ids[i]);
+        if (lake == null) {
+          continue;
+        }
+        int day;
+        synchronized (lake) {
+          day = DateUtil.dayOfSeason(lake.getEarliestFreeze(year, year));
+        }
+        if (day != -1) {
+          heap.offer(TopK.pack(-day, i));
+        }
+      }
+      return heap;
+    }).reduce(TopK::merge).orElseGet(() -> new TopK(k))).join();
+
+    ArrayList<String> result = new ArrayList<>();
+    for (long packed : best.toSortedArray()) {
+      result.add(ids[TopK.position(packed)]);
+    }
+    return result;
+  }
+}
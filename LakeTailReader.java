@@ -0,0 +1,291 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Follows a lake csv file that grows by appended lines and applies each new line to an existing
+ * LakeIceAnalyzer, instead of re-reading the whole file with LakeRecordReader.
+ *
+ * The reader remembers the byte offset it has consumed and only reads past it, stopping at the
+ * last complete line so that a line being written is picked up whole by a later poll. A line for
+ * a winter already in the analyzer is merged into that winter's record with mergeWith(), as
+ * mergeWinters() would; any other line is added as a new record. Lines whose columns, winter or
+ * dates ValidatingLakeReader would reject are counted and skipped. Changes are applied while
+ * holding the analyzer's monitor, so other threads can synchronize on it to read consistently.
+ *
+ * The offset moves past each line before it is applied, so a line is never applied twice, and the
+ * unread tail is read in bounded chunks however far behind the reader is.
+ */
+public class LakeTailReader {
+  /**
+   * Number of bytes read from the file at a time, unless a single line is longer
+   */
+  private static final int CHUNK_BYTES = 1 << 20;
+  /**
+   * Largest chunk that can be read into one array
+   */
+  private static final int MAX_CHUNK_BYTES = Integer.MAX_VALUE - 8;
+
+  /**
+   * The file being followed
+   */
+  private final Path file;
+  /**
+   * The list the new lines are applied to
+   */
+  private final LakeIceAnalyzer target;
+  /**
+   * Number of bytes of the file consumed so far
+   */
+  private long offset;
+  /**
+   * Whether the header line has been skipped
+   */
+  private boolean pastHeader;
+  /**
+   * Number of lines skipped because they could not be read as a record
+   */
+  private long rejected;
+  /**
+   * The thread running watch(), or null
+   */
+  private volatile Thread watcher;
+  /**
+   * The error that stopped the thread running watch(), or null
+   */
+  private volatile Exception failure;
+
+  /**
+   * Creates a reader that will apply the whole file, starting with its header, to the given list.
+   *
+   * @param file   the csv file to follow
+   * @param target the list to apply its records to
+   */
+  public LakeTailReader(Path file, LakeIceAnalyzer target) {
+    this(file, target, 0);
+  }
+
+  /**
+   * Creates a reader that resumes after a previously consumed offset, e.g. one saved from
+   * getOffset() after the file was loaded with LakeRecordReader.
+   *
+   * @param file   the csv file to follow
+   * @param target the list to apply its records to
+   * @param offset the number of bytes already applied, including the header line if non-zero
+   */
+  public LakeTailReader(Path file, LakeIceAnalyzer target, long offset) {
+    this.file = file;
+    this.target = target;
+    this.offset = offset;
+    this.pastHeader = offset > 0;
+  }
+
+  /**
+   * Gets the number of bytes of the file consumed so far.
+   *
+   * @return the byte offset the next poll starts from
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  /**
+   * Gets the number of lines skipped because their columns, winter or dates are malformed.
+   *
+   * @return the number of rejected lines so far
+   */
+  public synchronized long getRejected() {
+    return rejected;
+  }
+
+  /**
+   * Reads the complete lines appended since the last poll and applies them to the list.
+   *
+   * @return the number of records applied
+   * @throws IOException if the file cannot be read or has shrunk below the consumed offset
+   */
+  public synchronized int poll() throws IOException {
+    int applied = 0;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long length = channel.size();
+      if (length < offset) {
+        throw new IOException("File shrank below the consumed offset: " + file);
+      }
+      int chunk = CHUNK_BYTES;
+      while (offset < length) {
+        ByteBuffer buf = ByteBuffer.allocate((int) Math.min(length - offset, chunk));
+        while (buf.hasRemaining() && channel.read(buf, offset + buf.position()) > 0) {
+          // keep reading until the buffer is full or the end of the file
+        }
+        long before = offset;
+        applied += applyLines(buf.array(), buf.position());
+        if (offset == before) {
+          // no complete line: either the last line is still being written, or it is longer
+          // than the chunk
+          if (buf.hasRemaining() || buf.capacity() < chunk || chunk == MAX_CHUNK_BYTES) {
+            break;
+          }
+          chunk = (int) Math.min(2L * chunk, MAX_CHUNK_BYTES);
+        }
+      }
+    }
+    return applied;
+  }
+
+  /**
+   * Applies the complete lines at the start of a chunk, moving the offset past each line before
+   * it is applied.
+   *
+   * @param bytes  the chunk, read from the current offset
+   * @param length the number of bytes read into the chunk
+   * @return the number of records applied
+   */
+  private int applyLines(byte[] bytes, int length) {
+    int applied = 0;
+    synchronized (target) {
+      int start = 0;
+      for (int i = 0; i < length; i++) {
+        if (bytes[i] == '\n') {
+          String line = new String(bytes, start, i - start, StandardCharsets.UTF_8);
+          offset += i + 1 - start;
+          start = i + 1;
+          if (!pastHeader) {
+            pastHeader = true;
+          } else if (apply(line.endsWith("\r") ? line.substring(0, line.length() - 1) : line)) {
+            applied++;
+          }
+        }
+      }
+    }
+    return applied;
+  }
+
+  /**
+   * Applies one data line to the list, merging it into the record of the same winter if there is
+   * one. Lines without both dates are skipped, as they are when the file is loaded, and malformed
+   * lines are counted as rejected.
+   *
+   * @param line a data line without its terminator
+   * @return true if the line held a complete record
+   */
+  private boolean apply(String line) {
+    // the duration is read and corrected as it is on load, but a bad winter or date would throw
+    ValidatingLakeReader.RowStatus status =
+        ValidatingLakeReader.classify(line, new IceDataEntry[1]);
+    if (status == ValidatingLakeReader.RowStatus.BAD_COLUMN_COUNT
+        || status == ValidatingLakeReader.RowStatus.BAD_WINTER
+        || status == ValidatingLakeReader.RowStatus.BAD_DATE) {
+      rejected++;
+      return false;
+    }
+    IceDataEntry record = LakeRecordReader.parseRecord(line);
+
+    // clean the record the way the LakeIceAnalyzer constructor does when loading the file
+    if (record == null || !record.hasCompleteData()) {
+      return false;
+    }
+    record.updateDuration();
+
+    YearIndex index = target.getYearIndex();
+    int year = record.getYear();
+    for (int i = index.lowerBound(year); i < index.size() && index.getYear(i) == year; i++) {
+      IceDataEntry existing = index.getRecord(i);
+      if (existing.getWinter().equals(record.getWinter())) {
+        existing.mergeWith(record);
+        target.refresh(existing);
+        return true;
+      }
+    }
+    target.add(record);
+    return true;
+  }
+
+  /**
+   * Starts a daemon thread that polls the file whenever its directory reports a change, until
+   * stop() is called or a poll fails. The exception of a failed poll, checked or not, is kept
+   * for getFailure() and rethrown by stop().
+   *
+   * @return the started thread
+   * @throws IOException           if the directory cannot be watched
+   * @throws IllegalStateException if the reader is already watching
+   */
+  public synchronized Thread watch() throws IOException {
+    if (watcher != null) {
+      throw new IllegalStateException("ERROR: already watching " + file);
+    }
+    Path dir = file.toAbsolutePath().getParent();
+    WatchService service = dir.getFileSystem().newWatchService();
+    dir.register(service, StandardWatchEventKinds.ENTRY_MODIFY,
+        StandardWatchEventKinds.ENTRY_CREATE);
+
+    Thread thread = new Thread(() -> {
+      try (WatchService ws = service) {
+        poll();
+        while (!Thread.currentThread().isInterrupted()) {
+          WatchKey key = ws.take();
+          boolean changed = key.pollEvents().stream()
+              .anyMatch(e -> file.getFileName().equals(e.context()));
+          key.reset();
+          if (changed) {
+            poll();
+          }
+        }
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        // stopped
+      } catch (IOException | RuntimeException e) {
+        // the file was removed or truncated, or could not be applied; stop and keep the reason
+        failure = e;
+      }
+    }, "lake-tail-" + file.getFileName());
+    thread.setDaemon(true);
+    watcher = thread;
+    failure = null;
+    thread.start();
+    return thread;
+  }
+
+  /**
+   * Gets the error that made the thread started by watch() stop following the file.
+   *
+   * @return the failed poll's exception, or null if the thread has not failed
+   */
+  public Exception getFailure() {
+    return failure;
+  }
+
+  /**
+   * Stops the thread started by watch(), if any, and waits for it to finish.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   * @throws IOException          if the thread had already stopped because a poll could not
+   *                              read the file
+   * @throws RuntimeException      if the thread had already stopped because a poll failed
+   *                              otherwise
+   */
+  public void stop() throws InterruptedException, IOException {
+    Thread thread;
+    synchronized (this) {
+      thread = watcher;
+      watcher = null;
+    }
+    if (thread != null) {
+      thread.interrupt();
+      thread.join();
+    }
+    Exception error = failure;
+    if (error != null) {
+      failure = null;
+      if (error instanceof IOException) {
+        throw (IOException) error;
+      }
+      throw (RuntimeException) error;
+    }
+  }
+}
@@ -0,0 +1,457 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only list of freeze/thaw records stored column by column in a file and memory-mapped, so
+ * that opening it costs almost nothing and several processes reading the same archive share the
+ * operating system's single cached copy of it instead of each parsing it onto their own heap.
+ *
+ * File layout (all values big-endian):
+ * <ul>
+ * <li>header: magic, version, record count, flags (bit 0: records are in year order), and the
+ * length of the winter text section</li>
+ * <li>years: one int per record</li>
+ * <li>days of ice cover: one int per record</li>
+ * <li>freeze days of the season: one short per record, -1 if missing</li>
+ * <li>thaw days of the season: one short per record, -1 if missing</li>
+ * <li>winter offsets: count + 1 ints into the winter text section</li>
+ * <li>winter text: the UTF-8 bytes of every winter, back to back</li>
+ * </ul>
+ * Each column is mapped separately, so the file as a whole may exceed the 2 GB limit of a single
+ * mapping, but every column must fit in one mapping and is indexed with int positions. This limits
+ * an archive to MAX_RECORDS records and 2 GB of winter text.
+ *
+ * The archive only has read methods; to change the records, unpack them with toAnalyzer() and
+ * write a new archive.
+ */
+public class MappedLakeArchive implements Iterable<IceDataEntry> {
+  /**
+   * Largest number of records an archive can hold, so that the winter offsets column fits in one
+   * mapping
+   */
+  public static final int MAX_RECORDS = Integer.MAX_VALUE / 4 - 1;
+  /**
+   * Identifies an archive file ("LIA1")
+   */
+  private static final int MAGIC = 0x4C494131;
+  /**
+   * Version of the file layout
+   */
+  private static final int VERSION = 1;
+  /**
+   * Flag set when the records are in non-decreasing year order
+   */
+  private static final int FLAG_SORTED = 1;
+  /**
+   * Bytes in the header
+   */
+  private static final int HEADER = 24;
+
+  /**
+   * Number of records
+   */
+  private final int size;
+  /**
+   * Whether the records are in year order
+   */
+  private final boolean sorted;
+  /**
+   * Mapped year column
+   */
+  private final MappedByteBuffer years;
+  /**
+   * Mapped days of ice cover column
+   */
+  private final MappedByteBuffer days;
+  /**
+   * Mapped freeze day column
+   */
+  private final MappedByteBuffer freezeDays;
+  /**
+   * Mapped thaw day column
+   */
+  private final MappedByteBuffer thawDays;
+  /**
+   * Mapped winter offsets column
+   */
+  private final MappedByteBuffer winterOffsets;
+  /**
+   * Mapped winter text section
+   */
+  private final MappedByteBuffer winterText;
+
+  /**
+   * Maps an existing archive file for reading.
+   *
+   * @param file the archive written by write()
+   * @throws UncheckedIOException if the file cannot be read, is not an archive, or its length
+   *                              does not match its header
+   */
+  public MappedLakeArchive(Path file) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER) {
+        throw new IOException("ERROR: Not a lake archive: " + file);
+      }
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+      if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+        throw new IOException("ERROR: Not a lake archive: " + file);
+      }
+      size = header.getInt(8);
+      sorted = (header.getInt(12) & FLAG_SORTED) != 0;
+      long textLength = header.getLong(16);
+
+      // check the header against the file before mapping, so a truncated or corrupt archive fails
+      // here rather than on some later get()
+      if (size < 0 || size > MAX_RECORDS || textLength < 0 || textLength > Integer.MAX_VALUE
+          || channel.size() != HEADER + 12L * size + 4L * (size + 1) + textLength) {
+        throw new IOException("ERROR: Lake archive is truncated or corrupt: " + file);
+      }
+
+      // the mappings stay valid after the channel is closed
+      long pos = HEADER;
+      years = channel.map(FileChannel.MapMode.READ_ONLY, pos, 4L * size);
+      pos += 4L * size;
+      days = channel.map(FileChannel.MapMode.READ_ONLY, pos, 4L * size);
+      pos += 4L * size;
+      freezeDays = channel.map(FileChannel.MapMode.READ_ONLY, pos, 2L * size);
+      pos += 2L * size;
+      thawDays = channel.map(FileChannel.MapMode.READ_ONLY, pos, 2L * size);
+      pos += 2L * size;
+      winterOffsets = channel.map(FileChannel.MapMode.READ_ONLY, pos, 4L * (size + 1));
+      pos += 4L * (size + 1);
+      winterText = channel.map(FileChannel.MapMode.READ_ONLY, pos, textLength);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Writes the given records to an archive file, replacing any existing file. The records are
+   * read once per column rather than collected in memory first.
+   *
+   * The archive is written to a temporary file beside it, forced to disk and then renamed over the
+   * old one, so processes that have the old archive mapped keep reading it unchanged and never see
+   * a partly written file.
+   *
+   * @param file    the file to write
+   * @param records the records to store, e.g. a LakeIceAnalyzer
+   * @throws UncheckedIOException if the file cannot be written
+   */
+  public static void write(Path file, Iterable<IceDataEntry> records) {
+    // the first pass finds the header values
+    int count = 0;
+    long textLength = 0;
+    boolean inOrder = true;
+    int lastYear = Integer.MIN_VALUE;
+    for (IceDataEntry r : records) {
+      count++;
+      textLength += r.getWinter().getBytes(StandardCharsets.UTF_8).length;
+      inOrder &= r.getYear() >= lastYear;
+      lastYear = r.getYear();
+    }
+    if (count > MAX_RECORDS || textLength > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("ERROR: too many records for one archive");
+    }
+
+    Path temp = null;
+    try {
+      Path dir = file.toAbsolutePath().getParent();
+      temp = Files.createTempFile(dir, file.getFileName() + ".", ".tmp");
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+        writeColumns(out, records, count, inOrder, textLength);
+        out.flush();
+        channel.force(true);
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      if (temp != null) {
+        try {
+          // only still there if the archive was not moved into place
+          Files.deleteIfExists(temp);
+        } catch (IOException e) {
+          // leave it behind; the archive itself was not touched
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the header and columns of an archive.
+   *
+   * @param out        the stream to write to
+   * @param records    the records to store
+   * @param count      the number of records
+   * @param inOrder    whether the records are in year order
+   * @param textLength the length of the winter text section
+   * @throws IOException if the stream cannot be written
+   */
+  private static void writeColumns(DataOutputStream out, Iterable<IceDataEntry> records,
+      int count, boolean inOrder, long textLength) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(count);
+    out.writeInt(inOrder ? FLAG_SORTED : 0);
+    out.writeLong(textLength);
+
+    // then one pass per column
+    for (IceDataEntry r : records) {
+      out.writeInt(r.getYear());
+    }
+    for (IceDataEntry r : records) {
+      out.writeInt(r.getDaysOfIceCover());
+    }
+    for (IceDataEntry r : records) {
+      out.writeShort(DateUtil.dayOfSeason(r.getFreezeDate()));
+    }
+    for (IceDataEntry r : records) {
+      out.writeShort(DateUtil.dayOfSeason(r.getThawDate()));
+    }
+    int offset = 0;
+    out.writeInt(offset);
+    for (IceDataEntry r : records) {
+      offset += r.getWinter().getBytes(StandardCharsets.UTF_8).length;
+      out.writeInt(offset);
+    }
+    for (IceDataEntry r : records) {
+      out.write(r.getWinter().getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Unpacks the record at index i into a new IceDataEntry.
+   *
+   * @param i an index
+   * @return a new record with the stored values
+   * @throws IndexOutOfBoundsException if i is negative or greater than size()-1
+   */
+  public IceDataEntry get(int i) {
+    if (i < 0 || i > size - 1) {
+      throw new IndexOutOfBoundsException(
+          "ERROR: Index out of bounds (i is negative or greater than size()-1)");
+    }
+    int start = winterOffsets.getInt(4 * i);
+    byte[] text = new byte[winterOffsets.getInt(4 * (i + 1)) - start];
+    winterText.get(start, text);
+    return new IceDataEntry(new String(text, StandardCharsets.UTF_8),
+        DateUtil.dateOfSeason(getFreezeDay(i)), DateUtil.dateOfSeason(getThawDay(i)),
+        getDaysOfIceCover(i));
+  }
+
+  /**
+   * Gets the starting year of the winter at index i without creating a record.
+   *
+   * @param i an index between 0 and size()-1
+   * @return the starting year
+   */
+  public int getYear(int i) {
+    return years.getInt(4 * i);
+  }
+
+  /**
+   * Gets the days of ice cover at index i without creating a record.
+   *
+   * @param i an index between 0 and size()-1
+   * @return the days of ice cover, MISSING if unknown
+   */
+  public int getDaysOfIceCover(int i) {
+    return days.getInt(4 * i);
+  }
+
+  /**
+   * Gets the freeze day of the season at index i without creating a record.
+   *
+   * @param i an index between 0 and size()-1
+   * @return the freeze day of the season, or -1 if missing
+   */
+  public int getFreezeDay(int i) {
+    return freezeDays.getShort(2 * i);
+  }
+
+  /**
+   * Gets the thaw day of the season at index i without creating a record.
+   *
+   * @param i an index between 0 and size()-1
+   * @return the thaw day of the season, or -1 if missing
+   */
+  public int getThawDay(int i) {
+    return thawDays.getShort(2 * i);
+  }
+
+  /**
+   * Gets the number of records in the archive.
+   *
+   * @return the number of records
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Checks if the archive is empty.
+   *
+   * @return True if the archive contains no records, false otherwise.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Provides an iterator that unpacks each record as it is reached.
+   *
+   * @return An iterator traversing the archive from first to last record.
+   */
+  @Override
+  public Iterator<IceDataEntry> iterator() {
+    return new Iterator<IceDataEntry>() {
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < size;
+      }
+
+      @Override
+      public IceDataEntry next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException("ERROR: No next element left");
+        }
+        return get(next++);
+      }
+    };
+  }
+
+  /**
+   * Finds the first index whose year is at least the given year by binary search. Only valid
+   * when the archive is in year order; callers scan the year column otherwise.
+   *
+   * @param year the year to search for
+   * @return the first index from year or later, or size() if there is none
+   */
+  private int lowerBound(int year) {
+    int lo = 0;
+    int hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (getYear(mid) < year) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Sums the days of ice cover of the winters starting between year1 and year2, inclusive,
+   * reading only the needed part of the duration column when the archive is in year order.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the total days of ice cover in the range
+   */
+  public long getTotalFreezeDuration(int year1, int year2) {
+    long sum = 0;
+    if (sorted) {
+      int to = year2 == Integer.MAX_VALUE ? size : lowerBound(year2 + 1);
+      for (int i = lowerBound(year1); i < to; i++) {
+        sum += getDaysOfIceCover(i);
+      }
+    } else {
+      for (int i = 0; i < size; i++) {
+        int year = getYear(i);
+        if (year >= year1 && year <= year2) {
+          sum += getDaysOfIceCover(i);
+        }
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Counts the records whose winter starts between year1 and year2, inclusive.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the number of records in the range
+   */
+  public int countByYear(int year1, int year2) {
+    if (sorted) {
+      int to = year2 == Integer.MAX_VALUE ? size : lowerBound(year2 + 1);
+      return Math.max(0, to - lowerBound(year1));
+    }
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      int year = getYear(i);
+      if (year >= year1 && year <= year2) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Finds the average days of ice cover of every record.
+   *
+   * @return The average number of days of ice cover, or 0 if the archive is empty.
+   */
+  public float getAverageFreezeDuration() {
+    return size == 0 ? 0
+        : (float) getTotalFreezeDuration(Integer.MIN_VALUE, Integer.MAX_VALUE) / size;
+  }
+
+  /**
+   * Finds the minimum days of ice cover of every record.
+   *
+   * @return The minimum number of days of ice cover, or 0 if the archive is empty.
+   */
+  public int getMinFreezeDuration() {
+    int min = Integer.MAX_VALUE;
+    for (int i = 0; i < size; i++) {
+      min = Math.min(min, getDaysOfIceCover(i));
+    }
+    return size == 0 ? 0 : min;
+  }
+
+  /**
+   * Finds the maximum days of ice cover of every record.
+   *
+   * @return The maximum number of days of ice cover, or 0 if the archive is empty.
+   */
+  public int getMaxFreezeDuration() {
+    int max = Integer.MIN_VALUE;
+    for (int i = 0; i < size; i++) {
+      max = Math.max(max, getDaysOfIceCover(i));
+    }
+    return size == 0 ? 0 : max;
+  }
+
+  /**
+   * Unpacks every record into a new on-heap LakeIceAnalyzer, in order.
+   *
+   * @return a new list holding copies of the archived records
+   */
+  public LakeIceAnalyzer toAnalyzer() {
+    LakeIceAnalyzer analyzer = new LakeIceAnalyzer();
+    for (IceDataEntry record : this) {
+      analyzer.add(record);
+    }
+    return analyzer;
+  }
+}
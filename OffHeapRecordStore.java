@@ -0,0 +1,439 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A list of freeze/thaw records packed into fixed-width slots in direct (off-heap) ByteBuffers,
+ * for histories too large to hold as DoubleNode and IceDataEntry objects. The heap only holds one
+ * buffer reference per chunk of records, so the garbage collector never walks the records.
+ *
+ * Records are only turned back into IceDataEntry objects by get() and the iterator. The aggregate
+ * methods read the packed ints directly. Dates are stored as days of the season (see
+ * DateUtil.dayOfSeason()), so add() rejects a date that would not read back unchanged, such as one
+ * that is not a valid "Month day" string. Winters are stored as up to MAX_WINTER_LENGTH
+ * single-byte characters.
+ */
+public class OffHeapRecordStore implements ListADT<IceDataEntry>, Iterable<IceDataEntry> {
+  /**
+   * Longest winter string that fits in a slot
+   */
+  public static final int MAX_WINTER_LENGTH = 11;
+
+  /**
+   * Offset of the starting year within a slot
+   */
+  private static final int YEAR = 0;
+  /**
+   * Offset of the days of ice cover within a slot
+   */
+  private static final int DAYS = 4;
+  /**
+   * Offset of the freeze day of the season within a slot
+   */
+  private static final int FREEZE = 8;
+  /**
+   * Offset of the thaw day of the season within a slot
+   */
+  private static final int THAW = 10;
+  /**
+   * Offset of the winter string length within a slot
+   */
+  private static final int WINTER_LENGTH = 12;
+  /**
+   * Offset of the winter string characters within a slot
+   */
+  private static final int WINTER = 13;
+  /**
+   * Bytes per record
+   */
+  private static final int SLOT = WINTER + MAX_WINTER_LENGTH;
+  /**
+   * Records per chunk, a power of two so positions split with shifts
+   */
+  private static final int CHUNK_RECORDS = 1 << 16;
+  /**
+   * log2(CHUNK_RECORDS)
+   */
+  private static final int CHUNK_SHIFT = 16;
+
+  /**
+   * The direct buffers holding the records, each CHUNK_RECORDS slots long
+   */
+  private final ArrayList<ByteBuffer> chunks = new ArrayList<>();
+  /**
+   * Number of records in the store
+   */
+  private int size;
+
+  /**
+   * Constructs an empty store.
+   */
+  public OffHeapRecordStore() {
+  }
+
+  /**
+   * Constructs a store holding every record of the given source, in order.
+   *
+   * @param records the records to pack, e.g. a LakeIceAnalyzer
+   * @throws IllegalArgumentException if a record's winter does not fit in a slot or a date cannot
+   *                                  be stored
+   */
+  public OffHeapRecordStore(Iterable<IceDataEntry> records) {
+    for (IceDataEntry record : records) {
+      add(record);
+    }
+  }
+
+  /**
+   * Finds the buffer holding the given position.
+   *
+   * @param i a position
+   * @return the chunk containing it
+   */
+  private ByteBuffer chunk(int i) {
+    return chunks.get(i >>> CHUNK_SHIFT);
+  }
+
+  /**
+   * Finds the byte offset of the given position within its chunk.
+   *
+   * @param i a position
+   * @return the offset of its slot
+   */
+  private static int offset(int i) {
+    return (i & (CHUNK_RECORDS - 1)) * SLOT;
+  }
+
+  /**
+   * Appends a record to the end of the store in O(1) time.
+   *
+   * @param record the record to add
+   * @throws IllegalArgumentException if the record's winter does not fit in a slot or a date cannot
+   *                                  be stored
+   */
+  @Override
+  public void add(IceDataEntry record) {
+    String winter = record.getWinter();
+    if (winter.length() > MAX_WINTER_LENGTH) {
+      throw new IllegalArgumentException("ERROR: winter too long to store: " + winter);
+    }
+    for (int c = 0; c < winter.length(); c++) {
+      if (winter.charAt(c) > 0xFF) {
+        throw new IllegalArgumentException("ERROR: winter has unsupported characters: " + winter);
+      }
+    }
+    if (!isStorable(record.getFreezeDate()) || !isStorable(record.getThawDate())) {
+      throw new IllegalArgumentException("ERROR: date cannot be stored: " + record);
+    }
+
+    if (size == chunks.size() * CHUNK_RECORDS) {
+      chunks.add(ByteBuffer.allocateDirect(CHUNK_RECORDS * SLOT).order(ByteOrder.nativeOrder()));
+    }
+    write(size, record);
+    size++;
+  }
+
+  /**
+   * Checks whether a date reads back unchanged after being packed as a day of the season.
+   *
+   * @param date a freeze or thaw date, or null if missing
+   * @return true if the date is missing or in canonical "Month day" form
+   */
+  private static boolean isStorable(String date) {
+    int day = DateUtil.dayOfSeason(date);
+    return date == null || (day != -1 && date.equals(DateUtil.dateOfSeason(day)));
+  }
+
+  /**
+   * Packs a record into the slot at the given position.
+   *
+   * @param i      the position to write
+   * @param record the record to pack
+   */
+  private void write(int i, IceDataEntry record) {
+    ByteBuffer buf = chunk(i);
+    int base = offset(i);
+    String winter = record.getWinter();
+    buf.putInt(base + YEAR, record.getYear());
+    buf.putInt(base + DAYS, record.getDaysOfIceCover());
+    buf.putShort(base + FREEZE, (short) DateUtil.dayOfSeason(record.getFreezeDate()));
+    buf.putShort(base + THAW, (short) DateUtil.dayOfSeason(record.getThawDate()));
+    buf.put(base + WINTER_LENGTH, (byte) winter.length());
+    for (int c = 0; c < winter.length(); c++) {
+      buf.put(base + WINTER + c, (byte) winter.charAt(c));
+    }
+  }
+
+  /**
+   * Copies the slot at one position over the slot at another.
+   *
+   * @param from the position to copy
+   * @param to   the position to overwrite
+   */
+  private void copySlot(int from, int to) {
+    ByteBuffer src = chunk(from);
+    ByteBuffer dst = chunk(to);
+    int srcBase = offset(from);
+    int dstBase = offset(to);
+    for (int b = 0; b < SLOT; b++) {
+      dst.put(dstBase + b, src.get(srcBase + b));
+    }
+  }
+
+  /**
+   * Unpacks the record at index i into a new IceDataEntry.
+   *
+   * @param i an index
+   * @return a new record with the stored values
+   * @throws IndexOutOfBoundsException if i is negative or greater than size()-1
+   */
+  @Override
+  public IceDataEntry get(int i) {
+    if (i < 0 || i > size - 1) {
+      throw new IndexOutOfBoundsException(
+          "ERROR: Index out of bounds (i is negative or greater than size()-1)");
+    }
+    ByteBuffer buf = chunk(i);
+    int base = offset(i);
+    char[] winter = new char[buf.get(base + WINTER_LENGTH)];
+    for (int c = 0; c < winter.length; c++) {
+      winter[c] = (char) (buf.get(base + WINTER + c) & 0xFF);
+    }
+    return new IceDataEntry(new String(winter), DateUtil.dateOfSeason(buf.getShort(base + FREEZE)),
+        DateUtil.dateOfSeason(buf.getShort(base + THAW)), buf.getInt(base + DAYS));
+  }
+
+  /**
+   * Gets the starting year of the winter at index i without creating a record.
+   *
+   * @param i an index between 0 and size()-1
+   * @return the starting year
+   */
+  public int getYear(int i) {
+    return chunk(i).getInt(offset(i) + YEAR);
+  }
+
+  /**
+   * Gets the days of ice cover at index i without creating a record.
+   *
+   * @param i an index between 0 and size()-1
+   * @return the days of ice cover, MISSING if unknown
+   */
+  public int getDaysOfIceCover(int i) {
+    return chunk(i).getInt(offset(i) + DAYS);
+  }
+
+  /**
+   * Gets the freeze day of the season at index i without creating a record.
+   *
+   * @param i an index between 0 and size()-1
+   * @return the freeze day of the season, or -1 if missing
+   */
+  public int getFreezeDay(int i) {
+    return chunk(i).getShort(offset(i) + FREEZE);
+  }
+
+  /**
+   * Gets the thaw day of the season at index i without creating a record.
+   *
+   * @param i an index between 0 and size()-1
+   * @return the thaw day of the season, or -1 if missing
+   */
+  public int getThawDay(int i) {
+    return chunk(i).getShort(offset(i) + THAW);
+  }
+
+  /**
+   * Removes the first record equal to the given one. The records after it are shifted down one
+   * slot, so this takes O(n) time; the store is meant for append-mostly histories.
+   *
+   * @param element the record to remove
+   * @return true if a record was removed
+   */
+  @Override
+  public boolean remove(IceDataEntry element) {
+    int year = element.getYear();
+    for (int i = 0; i < size; i++) {
+      // compare the packed year first so most slots are skipped without unpacking
+      if (getYear(i) == year && get(i).equals(element)) {
+        for (int j = i + 1; j < size; j++) {
+          copySlot(j, j - 1);
+        }
+        size--;
+        if (chunks.size() > 1 && size <= (chunks.size() - 1) * CHUNK_RECORDS) {
+          chunks.remove(chunks.size() - 1);
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the number of records in the store.
+   *
+   * @return the number of records
+   */
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Checks if the store is empty.
+   *
+   * @return True if the store contains no records, false otherwise.
+   */
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Removes all records and releases the buffers.
+   */
+  @Override
+  public void clear() {
+    chunks.clear();
+    size = 0;
+  }
+
+  /**
+   * Provides an iterator that unpacks each record as it is reached.
+   *
+   * @return An iterator traversing the store from first to last record.
+   */
+  @Override
+  public Iterator<IceDataEntry> iterator() {
+    return new Iterator<IceDataEntry>() {
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < size;
+      }
+
+      @Override
+      public IceDataEntry next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException("ERROR: No next element left");
+        }
+        return get(next++);
+      }
+    };
+  }
+
+  /**
+   * Sums the days of ice cover of every record, reading the packed ints directly.
+   *
+   * @return the total days of ice cover
+   */
+  public long getTotalFreezeDuration() {
+    long sum = 0;
+    for (int c = 0; c < chunks.size(); c++) {
+      ByteBuffer buf = chunks.get(c);
+      int n = Math.min(CHUNK_RECORDS, size - c * CHUNK_RECORDS);
+      for (int i = 0; i < n; i++) {
+        sum += buf.getInt(i * SLOT + DAYS);
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Finds the average days of ice cover of every record.
+   *
+   * @return The average number of days of ice cover, or 0 if the store is empty.
+   */
+  public float getAverageFreezeDuration() {
+    return size == 0 ? 0 : (float) getTotalFreezeDuration() / size;
+  }
+
+  /**
+   * Finds the minimum days of ice cover of every record.
+   *
+   * @return The minimum number of days of ice cover, or 0 if the store is empty.
+   */
+  public int getMinFreezeDuration() {
+    int min = Integer.MAX_VALUE;
+    for (int i = 0; i < size; i++) {
+      min = Math.min(min, getDaysOfIceCover(i));
+    }
+    return size == 0 ? 0 : min;
+  }
+
+  /**
+   * Finds the maximum days of ice cover of every record.
+   *
+   * @return The maximum number of days of ice cover, or 0 if the store is empty.
+   */
+  public int getMaxFreezeDuration() {
+    int max = Integer.MIN_VALUE;
+    for (int i = 0; i < size; i++) {
+      max = Math.max(max, getDaysOfIceCover(i));
+    }
+    return size == 0 ? 0 : max;
+  }
+
+  /**
+   * Finds the earliest freeze date of every record.
+   *
+   * @return The earliest freeze date, e.g. "December 2", or null if no record has one.
+   */
+  public String getEarliestFreeze() {
+    int earliest = Integer.MAX_VALUE;
+    for (int i = 0; i < size; i++) {
+      int day = getFreezeDay(i);
+      if (day != -1) {
+        earliest = Math.min(earliest, day);
+      }
+    }
+    return DateUtil.dateOfSeason(earliest);
+  }
+
+  /**
+   * Finds the latest thaw date of every record.
+   *
+   * @return The latest thaw date, e.g. "April 15", or null if no record has one.
+   */
+  public String getLatestThaw() {
+    int latest = -1;
+    for (int i = 0; i < size; i++) {
+      latest = Math.max(latest, getThawDay(i));
+    }
+    return DateUtil.dateOfSeason(latest);
+  }
+
+  /**
+   * Counts the records whose winter starts between year1 and year2, inclusive.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the number of records in the range
+   */
+  public int countByYear(int year1, int year2) {
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      int year = getYear(i);
+      if (year >= year1 && year <= year2) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Unpacks every record into a new on-heap LakeIceAnalyzer, in order.
+   *
+   * @return a new list holding copies of the stored records
+   */
+  public LakeIceAnalyzer toAnalyzer() {
+    LakeIceAnalyzer analyzer = new LakeIceAnalyzer();
+    for (IceDataEntry record : this) {
+      analyzer.add(record);
+    }
+    return analyzer;
+  }
+}
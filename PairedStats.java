@@ -0,0 +1,71 @@
+/**
+ * Instantiable class holding statistics of two lakes compared winter by winter.
+ */
+public class PairedStats {
+  /**
+   * Number of winters present in both lakes
+   */
+  private final int count;
+  /**
+   * Mean of (first lake's freeze day - second lake's freeze day) over winters where both dates
+   * are valid, or NaN if there are none
+   */
+  private final double meanFreezeDifference;
+  /**
+   * Pearson correlation of the days of ice cover over winters where both durations are known, or
+   * NaN if it is undefined
+   */
+  private final double correlation;
+
+  /**
+   * Constructor to initialize paired statistics.
+   *
+   * @param count                The number of winters present in both lakes.
+   * @param meanFreezeDifference The mean freeze date difference in days, NaN if unavailable.
+   * @param correlation          The correlation of days of ice cover, NaN if undefined.
+   */
+  public PairedStats(int count, double meanFreezeDifference, double correlation) {
+    this.count = count;
+    this.meanFreezeDifference = meanFreezeDifference;
+    this.correlation = correlation;
+  }
+
+  /**
+   * Gets the number of winters present in both lakes.
+   *
+   * @return the number of matched winters
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Gets the mean number of days by which the first lake froze later than the second (negative if
+   * it froze earlier).
+   *
+   * @return the mean freeze date difference in days, or NaN if no winter has both dates
+   */
+  public double getMeanFreezeDifference() {
+    return meanFreezeDifference;
+  }
+
+  /**
+   * Gets the Pearson correlation of the days of ice cover of the two lakes.
+   *
+   * @return the correlation between -1 and 1, or NaN if it is undefined
+   */
+  public double getCorrelation() {
+    return correlation;
+  }
+
+  /**
+   * Converts the statistics into a readable string.
+   *
+   * @return A string representation of the statistics.
+   */
+  @Override
+  public String toString() {
+    return "Winters: " + count + " | Mean freeze difference: " + meanFreezeDifference
+        + " | Correlation: " + correlation;
+  }
+}
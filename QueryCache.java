@@ -0,0 +1,216 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A bounded least-recently-used cache of query results for a single LakeIceAnalyzer.
+ *
+ * Each result is stored with the modification count of the list it was computed from, and is only
+ * returned while that count is unchanged, so any add, remove, clear, merge or duration update
+ * through the list's own methods invalidates every earlier result. A cached list never leaves the
+ * cache: every lookup returns a fresh copy of it with copies of its records, so a caller that
+ * reverses, modifies or edits the records of a returned list does not change what later lookups
+ * return. The cache is bounded both by number of entries and by the total number of records held
+ * in cached lists.
+ *
+ * Every method is synchronized on the cache, since even a hit reorders its access-ordered map. A
+ * missed query runs while the lock is held, so concurrent lookups of one cache take turns.
+ */
+public class QueryCache {
+  /**
+   * A single cached result.
+   */
+  private static class Entry {
+    /**
+     * The cached result (may be null)
+     */
+    private final Object result;
+    /**
+     * Modification count of the source list when the result was computed
+     */
+    private final int sourceModCount;
+    /**
+     * Cost of keeping this entry: one plus the number of records in a list result
+     */
+    private final int weight;
+
+    /**
+     * Creates an entry for a freshly computed result.
+     *
+     * @param result         the result of the query
+     * @param sourceModCount the modification count of the source list
+     */
+    private Entry(Object result, int sourceModCount) {
+      this.result = result;
+      this.sourceModCount = sourceModCount;
+      if (result instanceof LakeIceAnalyzer) {
+        this.weight = ((LakeIceAnalyzer) result).size() + 1;
+      } else {
+        this.weight = 1;
+      }
+    }
+
+    /**
+     * Checks whether this entry may still be returned.
+     *
+     * @param modCount the current modification count of the source list
+     * @return true if the source list has not changed
+     */
+    private boolean isValid(int modCount) {
+      return sourceModCount == modCount;
+    }
+  }
+
+  /**
+   * Cached entries in least- to most-recently used order
+   */
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  /**
+   * Maximum number of entries
+   */
+  private final int maxEntries;
+  /**
+   * Maximum total weight of all entries
+   */
+  private final long maxWeight;
+  /**
+   * Current total weight of all entries
+   */
+  private long weight;
+  /**
+   * Number of lookups answered from the cache
+   */
+  private long hits;
+  /**
+   * Number of lookups that had to run the query
+   */
+  private long misses;
+  /**
+   * Number of entries dropped to stay within the bounds
+   */
+  private long evictions;
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param maxEntries the maximum number of results to keep
+   * @param maxRecords the maximum total number of records to keep across all cached lists
+   * @throws IllegalArgumentException if either bound is not positive
+   */
+  public QueryCache(int maxEntries, long maxRecords) {
+    if (maxEntries <= 0 || maxRecords <= 0) {
+      throw new IllegalArgumentException("ERROR: cache bounds must be positive");
+    }
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxRecords + maxEntries;
+  }
+
+  /**
+   * Returns the cached result of the given query if it is still valid, and otherwise runs the
+   * query and caches its result.
+   *
+   * @param <T>      the type of the result
+   * @param key      identifies the query kind and its parameters
+   * @param modCount the current modification count of the source list
+   * @param query    computes the result on a miss
+   * @return the result of the query, or a copy of it if it is a list
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized <T> T get(String key, int modCount, Supplier<T> query) {
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      if (entry.isValid(modCount)) {
+        hits++;
+        return (T) copyOf(entry.result);
+      }
+      // stale: drop it now rather than waiting for it to age out
+      entries.remove(key);
+      weight -= entry.weight;
+    }
+
+    misses++;
+    T result = query.get();
+    entry = new Entry(result, modCount);
+    if (entry.weight <= maxWeight) {
+      entries.put(key, entry);
+      weight += entry.weight;
+      evict();
+      return (T) copyOf(result);
+    }
+    return result;
+  }
+
+  /**
+   * Copies a list result so that the cached one cannot be changed by the caller. Other results
+   * are immutable and returned as they are.
+   *
+   * @param result a cached result
+   * @return a new list holding copies of the records of a list result, or the result itself
+   */
+  private static Object copyOf(Object result) {
+    if (!(result instanceof LakeIceAnalyzer)) {
+      return result;
+    }
+    LakeIceAnalyzer copy = new LakeIceAnalyzer();
+    for (DoubleNode cur = ((LakeIceAnalyzer) result).getHead(); cur != null; cur = cur.getNext()) {
+      copy.add(cur.getLakeRecord().copy());
+    }
+    return copy;
+  }
+
+  /**
+   * Drops least-recently used entries until both bounds are respected.
+   */
+  private void evict() {
+    Iterator<Entry> iter = entries.values().iterator();
+    while ((entries.size() > maxEntries || weight > maxWeight) && iter.hasNext()) {
+      weight -= iter.next().weight;
+      iter.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Removes every entry without touching the counters.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  /**
+   * Gets the number of entries currently cached.
+   *
+   * @return the number of entries
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Gets the number of lookups answered from the cache.
+   *
+   * @return the hit count
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Gets the number of lookups that had to run the query.
+   *
+   * @return the miss count
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Gets the number of entries dropped to stay within the bounds.
+   *
+   * @return the eviction count
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+}
@@ -0,0 +1,156 @@
+/**
+ * Instantiable class holding the summary statistics of the winters that fall in one range of
+ * years.
+ */
+public class RangeSummary {
+  /**
+   * The first year of the range
+   */
+  private final int year1;
+  /**
+   * The last year of the range
+   */
+  private final int year2;
+  /**
+   * Number of records in the range
+   */
+  private final int count;
+  /**
+   * Total days of ice cover in the range
+   */
+  private final long totalDays;
+  /**
+   * Minimum days of ice cover in the range, or 0 if the range is empty
+   */
+  private final int minDays;
+  /**
+   * Maximum days of ice cover in the range, or 0 if the range is empty
+   */
+  private final int maxDays;
+  /**
+   * Earliest freeze date in the range (e.g., "December 2"), or null if there is none
+   */
+  private final String earliestFreeze;
+  /**
+   * Latest thaw date in the range (e.g., "April 15"), or null if there is none
+   */
+  private final String latestThaw;
+
+  /**
+   * Constructor to initialize a range summary.
+   *
+   * @param year1          The first year of the range.
+   * @param year2          The last year of the range.
+   * @param count          The number of records in the range.
+   * @param totalDays      The total days of ice cover in the range.
+   * @param minDays        The minimum days of ice cover, 0 if the range is empty.
+   * @param maxDays        The maximum days of ice cover, 0 if the range is empty.
+   * @param earliestFreeze The earliest freeze date (nullable if not available).
+   * @param latestThaw     The latest thaw date (nullable if not available).
+   */
+  public RangeSummary(int year1, int year2, int count, long totalDays, int minDays, int maxDays,
+      String earliestFreeze, String latestThaw) {
+    this.year1 = year1;
+    this.year2 = year2;
+    this.count = count;
+    this.totalDays = totalDays;
+    this.minDays = minDays;
+    this.maxDays = maxDays;
+    this.earliestFreeze = earliestFreeze;
+    this.latestThaw = latestThaw;
+  }
+
+  /**
+   * Gets the first year of the range.
+   *
+   * @return the first year
+   */
+  public int getYear1() {
+    return year1;
+  }
+
+  /**
+   * Gets the last year of the range.
+   *
+   * @return the last year
+   */
+  public int getYear2() {
+    return year2;
+  }
+
+  /**
+   * Gets the number of records in the range.
+   *
+   * @return the record count
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Gets the total days of ice cover in the range.
+   *
+   * @return the total days
+   */
+  public long getTotalDays() {
+    return totalDays;
+  }
+
+  /**
+   * Gets the average days of ice cover in the range.
+   *
+   * @return the average, or 0 if the range is empty
+   */
+  public float getAverageDays() {
+    return count == 0 ? 0 : (float) totalDays / count;
+  }
+
+  /**
+   * Gets the minimum days of ice cover in the range.
+   *
+   * @return the minimum, or 0 if the range is empty
+   */
+  public int getMinDays() {
+    return minDays;
+  }
+
+  /**
+   * Gets the maximum days of ice cover in the range.
+   *
+   * @return the maximum, or 0 if the range is empty
+   */
+  public int getMaxDays() {
+    return maxDays;
+  }
+
+  /**
+   * Gets the earliest freeze date in the range.
+   *
+   * @return the earliest freeze date, or null if unavailable
+   */
+  public String getEarliestFreeze() {
+    return earliestFreeze;
+  }
+
+  /**
+   * Gets the latest thaw date in the range.
+   *
+   * @return the latest thaw date, or null if unavailable
+   */
+  public String getLatestThaw() {
+    return latestThaw;
+  }
+
+  /**
+   * Converts the summary into a readable string.
+   *
+   * @return A string representation of the summary.
+   */
+  @Override
+  public String toString() {
+    return year1 + "-" + year2 + " | Count: " + count + " | Avg: " + getAverageDays() + " | Min: "
+        + minDays + " | Max: " + maxDays + " | Earliest freeze: "
+        + (earliestFreeze != null ? earliestFreeze : "Unknown") + " | Latest thaw: "
+        + (latestThaw != null ? latestThaw : "Unknown");
+  }
+}
@@ -0,0 +1,189 @@
+/**
+ * A segment tree over the records of a YearIndex that answers range minimum and maximum days of
+ * ice cover, earliest freeze and latest thaw in O(log n) time, and supports O(log n) point updates
+ * when a record is changed in place.
+ *
+ * Freeze and thaw dates are stored as days of the season (see DateUtil.dayOfSeason()), so no date
+ * strings are parsed while answering queries.
+ */
+public class RangeTree {
+  /**
+   * Identity value for minimum queries; also used for records with no valid freeze date
+   */
+  private static final int NONE_MIN = Integer.MAX_VALUE;
+  /**
+   * Identity value for maximum queries
+   */
+  private static final int NONE_MAX = Integer.MIN_VALUE;
+
+  /**
+   * Number of leaves
+   */
+  private final int n;
+  /**
+   * Minimum days of ice cover; leaves live at n..2n-1 and node i covers nodes 2i and 2i+1
+   */
+  private final int[] minDays;
+  /**
+   * Maximum days of ice cover, laid out like minDays
+   */
+  private final int[] maxDays;
+  /**
+   * Earliest freeze day of the season, laid out like minDays
+   */
+  private final int[] minFreeze;
+  /**
+   * Latest thaw day of the season, laid out like minDays
+   */
+  private final int[] maxThaw;
+
+  /**
+   * Builds a tree over every record of the given index in O(n) time.
+   *
+   * @param index the year index whose order the tree follows
+   */
+  public RangeTree(YearIndex index) {
+    n = index.size();
+    minDays = new int[2 * n];
+    maxDays = new int[2 * n];
+    minFreeze = new int[2 * n];
+    maxThaw = new int[2 * n];
+
+    // fill the leaves, then combine each internal node from its two children
+    for (int i = 0; i < n; i++) {
+      setLeaf(i, index.getRecord(i));
+    }
+    for (int i = n - 1; i > 0; i--) {
+      pull(i);
+    }
+  }
+
+  /**
+   * Stores the values of the given record in leaf i without updating its ancestors.
+   *
+   * @param i      the position of the record
+   * @param record the record at that position
+   */
+  private void setLeaf(int i, IceDataEntry record) {
+    int days = record.getDaysOfIceCover();
+    int freeze = DateUtil.dayOfSeason(record.getFreezeDate());
+    int thaw = DateUtil.dayOfSeason(record.getThawDate());
+    minDays[n + i] = days;
+    maxDays[n + i] = days;
+    minFreeze[n + i] = freeze == -1 ? NONE_MIN : freeze;
+    maxThaw[n + i] = thaw == -1 ? NONE_MAX : thaw;
+  }
+
+  /**
+   * Recomputes internal node i from its children.
+   *
+   * @param i the internal node to recompute
+   */
+  private void pull(int i) {
+    minDays[i] = Math.min(minDays[2 * i], minDays[2 * i + 1]);
+    maxDays[i] = Math.max(maxDays[2 * i], maxDays[2 * i + 1]);
+    minFreeze[i] = Math.min(minFreeze[2 * i], minFreeze[2 * i + 1]);
+    maxThaw[i] = Math.max(maxThaw[2 * i], maxThaw[2 * i + 1]);
+  }
+
+  /**
+   * Updates the tree after the record at position i changed, in O(log n) time.
+   *
+   * @param i      the position of the changed record
+   * @param record the record at that position
+   */
+  public void update(int i, IceDataEntry record) {
+    setLeaf(i, record);
+    for (int node = (n + i) / 2; node > 0; node /= 2) {
+      pull(node);
+    }
+  }
+
+  /**
+   * Finds the minimum days of ice cover over positions from (inclusive) to (exclusive).
+   *
+   * @param from the first position
+   * @param to   one past the last position
+   * @return the minimum, or Integer.MAX_VALUE if the range is empty
+   */
+  public int minDays(int from, int to) {
+    return queryMin(minDays, from, to);
+  }
+
+  /**
+   * Finds the maximum days of ice cover over positions from (inclusive) to (exclusive).
+   *
+   * @param from the first position
+   * @param to   one past the last position
+   * @return the maximum, or Integer.MIN_VALUE if the range is empty
+   */
+  public int maxDays(int from, int to) {
+    return queryMax(maxDays, from, to);
+  }
+
+  /**
+   * Finds the earliest freeze day of the season over positions from (inclusive) to (exclusive).
+   *
+   * @param from the first position
+   * @param to   one past the last position
+   * @return the earliest freeze day, or -1 if no record in the range has a valid freeze date
+   */
+  public int earliestFreeze(int from, int to) {
+    int min = queryMin(minFreeze, from, to);
+    return min == NONE_MIN ? -1 : min;
+  }
+
+  /**
+   * Finds the latest thaw day of the season over positions from (inclusive) to (exclusive).
+   *
+   * @param from the first position
+   * @param to   one past the last position
+   * @return the latest thaw day, or -1 if no record in the range has a valid thaw date
+   */
+  public int latestThaw(int from, int to) {
+    int max = queryMax(maxThaw, from, to);
+    return max == NONE_MAX ? -1 : max;
+  }
+
+  /**
+   * Walks the tree bottom-up to find the minimum of the given array over a range of leaves.
+   *
+   * @param tree the array to query
+   * @param from the first position
+   * @param to   one past the last position
+   * @return the minimum, or NONE_MIN if the range is empty
+   */
+  private int queryMin(int[] tree, int from, int to) {
+    int result = NONE_MIN;
+    for (int l = from + n, r = to + n; l < r; l /= 2, r /= 2) {
+      if ((l & 1) == 1) {
+        result = Math.min(result, tree[l++]);
+      }
+      if ((r & 1) == 1) {
+        result = Math.min(result, tree[--r]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Walks the tree bottom-up to find the maximum of the given array over a range of leaves.
+   *
+   * @param tree the array to query
+   * @param from the first position
+   * @param to   one past the last position
+   * @return the maximum, or NONE_MAX if the range is empty
+   */
+  private int queryMax(int[] tree, int from, int to) {
+    int result = NONE_MAX;
+    for (int l = from + n, r = to + n; l < r; l /= 2, r /= 2) {
+      if ((l & 1) == 1) {
+        result = Math.max(result, tree[l++]);
+      }
+      if ((r & 1) == 1) {
+        result = Math.max(result, tree[--r]);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,172 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * A stage of a record batch pipeline that transforms each batch it receives and publishes the
+ * result. It requests one batch at a time from upstream and only requests the next once the
+ * result has been accepted downstream, so backpressure passes through the stage unchanged.
+ *
+ * The cleaning() and seasonMerging() stages apply the same steps as removeIncompleteRecords(),
+ * updateDurations() and mergeWinters() do on a whole list.
+ */
+public abstract class RecordBatchProcessor extends SubmissionPublisher<List<IceDataEntry>>
+    implements Flow.Processor<List<IceDataEntry>, List<IceDataEntry>> {
+  /**
+   * The upstream subscription
+   */
+  private Flow.Subscription subscription;
+
+  /**
+   * Creates a stage that delivers on the common ForkJoinPool and buffers up to the given number
+   * of batches per subscriber.
+   *
+   * @param maxBufferedBatches the number of batches each subscriber may buffer
+   */
+  protected RecordBatchProcessor(int maxBufferedBatches) {
+    super(ForkJoinPool.commonPool(), maxBufferedBatches);
+  }
+
+  /**
+   * Transforms one batch.
+   *
+   * @param batch the records received from upstream
+   * @return the records to publish, possibly empty
+   */
+  protected abstract List<IceDataEntry> process(List<IceDataEntry> batch);
+
+  /**
+   * Produces any records held back once upstream has completed.
+   *
+   * @return the remaining records to publish, possibly empty
+   */
+  protected List<IceDataEntry> finish() {
+    return new ArrayList<>();
+  }
+
+  /**
+   * Requests the first batch from upstream.
+   *
+   * @param subscription the upstream subscription
+   */
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    this.subscription = subscription;
+    subscription.request(1);
+  }
+
+  /**
+   * Publishes the transformed batch, blocking while a subscriber's buffer is full, then requests
+   * the next batch. If the batch cannot be processed, upstream is cancelled and the subscribers
+   * receive the failure.
+   *
+   * @param batch the records received from upstream
+   */
+  @Override
+  public void onNext(List<IceDataEntry> batch) {
+    try {
+      List<IceDataEntry> result = process(batch);
+      if (!result.isEmpty()) {
+        submit(result);
+      }
+    } catch (RuntimeException e) {
+      subscription.cancel();
+      closeExceptionally(e);
+      return;
+    }
+    subscription.request(1);
+  }
+
+  /**
+   * Passes an upstream failure on to the subscribers.
+   *
+   * @param error the upstream failure
+   */
+  @Override
+  public void onError(Throwable error) {
+    closeExceptionally(error);
+  }
+
+  /**
+   * Publishes any held back records and completes the subscribers, or passes on the failure if
+   * they cannot be produced.
+   */
+  @Override
+  public void onComplete() {
+    try {
+      List<IceDataEntry> rest = finish();
+      if (!rest.isEmpty()) {
+        submit(rest);
+      }
+    } catch (RuntimeException e) {
+      closeExceptionally(e);
+      return;
+    }
+    close();
+  }
+
+  /**
+   * Creates a stage that drops records with a missing freeze or thaw date and corrects the
+   * duration of the rest.
+   *
+   * @return a new cleaning stage
+   */
+  public static RecordBatchProcessor cleaning() {
+    return new RecordBatchProcessor(RecordBatchPublisher.DEFAULT_BUFFERED_BATCHES) {
+      @Override
+      protected List<IceDataEntry> process(List<IceDataEntry> batch) {
+        List<IceDataEntry> result = new ArrayList<>(batch.size());
+        for (IceDataEntry record : batch) {
+          if (record.hasCompleteData()) {
+            record.updateDuration();
+            result.add(record);
+          }
+        }
+        return result;
+      }
+    };
+  }
+
+  /**
+   * Creates a stage that merges consecutive records of the same winter with mergeWith(). The last
+   * record of each batch is held back until the next batch shows whether its winter continues.
+   *
+   * @return a new season merging stage
+   */
+  public static RecordBatchProcessor seasonMerging() {
+    return new RecordBatchProcessor(RecordBatchPublisher.DEFAULT_BUFFERED_BATCHES) {
+      /**
+       * The last record seen, not yet published
+       */
+      private IceDataEntry carry;
+
+      @Override
+      protected List<IceDataEntry> process(List<IceDataEntry> batch) {
+        List<IceDataEntry> result = new ArrayList<>(batch.size());
+        for (IceDataEntry record : batch) {
+          if (carry != null && carry.getWinter().equals(record.getWinter())) {
+            carry.mergeWith(record);
+          } else {
+            if (carry != null) {
+              result.add(carry);
+            }
+            carry = record;
+          }
+        }
+        return result;
+      }
+
+      @Override
+      protected List<IceDataEntry> finish() {
+        List<IceDataEntry> rest = new ArrayList<>();
+        if (carry != null) {
+          rest.add(carry);
+          carry = null;
+        }
+        return rest;
+      }
+    };
+  }
+}
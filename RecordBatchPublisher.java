@@ -0,0 +1,114 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Publishes the records of a lake csv file as batches while it is being read, so analysis can
+ * start before the file is finished and memory is bounded by a few batches instead of the whole
+ * file.
+ *
+ * Reading happens on its own thread once start() is called. Each subscriber buffers at most
+ * maxBufferedBatches batches; when any subscriber's buffer is full the reading thread blocks until
+ * that subscriber requests more, so a slow subscriber slows the reader rather than letting batches
+ * pile up. Records are published in file order, one per data line that LakeRecordReader would
+ * accept.
+ */
+public class RecordBatchPublisher extends SubmissionPublisher<List<IceDataEntry>> {
+  /**
+   * Default number of records per batch
+   */
+  public static final int DEFAULT_BATCH_SIZE = 1024;
+  /**
+   * Default number of batches each subscriber may buffer
+   */
+  public static final int DEFAULT_BUFFERED_BATCHES = 4;
+
+  /**
+   * The csv file to read
+   */
+  private final Path file;
+  /**
+   * Number of records per batch
+   */
+  private final int batchSize;
+
+  /**
+   * Creates a publisher of the given file with the default batch size and buffer, delivering on
+   * the common ForkJoinPool.
+   *
+   * @param file the csv file to read, with a header line
+   */
+  public RecordBatchPublisher(Path file) {
+    this(file, DEFAULT_BATCH_SIZE, DEFAULT_BUFFERED_BATCHES, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a publisher of the given file.
+   *
+   * @param file               the csv file to read, with a header line
+   * @param batchSize          the number of records per batch
+   * @param maxBufferedBatches the number of batches each subscriber may buffer, rounded up to a
+   *                           power of two
+   * @param executor           the executor that delivers batches to subscribers
+   * @throws IllegalArgumentException if batchSize or maxBufferedBatches is not positive
+   */
+  public RecordBatchPublisher(Path file, int batchSize, int maxBufferedBatches,
+      Executor executor) {
+    super(executor, maxBufferedBatches);
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("ERROR: batch size must be positive");
+    }
+    this.file = file;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Starts reading the file on a new daemon thread. Subscribers should be attached first, since
+   * batches published before a subscriber arrives are not replayed to it.
+   *
+   * @return the reading thread
+   */
+  public Thread start() {
+    Thread reader = new Thread(this::publishAll, "lake-publisher-" + file.getFileName());
+    reader.setDaemon(true);
+    reader.start();
+    return reader;
+  }
+
+  /**
+   * Reads the file and publishes its records, then closes the publisher normally or with the
+   * read or parse error.
+   */
+  private void publishAll() {
+    try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      in.readLine(); // skip the header
+
+      List<IceDataEntry> batch = new ArrayList<>(batchSize);
+      for (String line = in.readLine(); line != null; line = in.readLine()) {
+        IceDataEntry record = LakeRecordReader.parseRecord(line);
+        if (record == null) {
+          continue;
+        }
+        batch.add(record);
+        if (batch.size() == batchSize) {
+          // blocks while a subscriber's buffer is full
+          submit(batch);
+          batch = new ArrayList<>(batchSize);
+        }
+      }
+      if (!batch.isEmpty()) {
+        submit(batch);
+      }
+      close();
+    } catch (IOException | RuntimeException e) {
+      closeExceptionally(e);
+    }
+  }
+}
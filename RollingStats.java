@@ -0,0 +1,174 @@
+/**
+ * Moving statistics of the days of ice cover over every window of consecutive winters, stored in
+ * primitive arrays indexed by window position. Window i covers the records at year-index positions
+ * i to i + window - 1.
+ */
+public class RollingStats {
+  /**
+   * Number of records in each window
+   */
+  private final int window;
+  /**
+   * Starting year of the last winter in each window
+   */
+  private final int[] endYears;
+  /**
+   * Mean days of ice cover of each window
+   */
+  private final double[] mean;
+  /**
+   * Minimum days of ice cover of each window
+   */
+  private final int[] min;
+  /**
+   * Maximum days of ice cover of each window
+   */
+  private final int[] max;
+  /**
+   * Population standard deviation of each window, or null if it was not requested
+   */
+  private final double[] stdDev;
+
+  /**
+   * Computes the moving statistics of the given year index in a single O(n) pass. The minimum and
+   * maximum are tracked with monotonic deques of positions, and the mean and standard deviation
+   * with running sums that are updated as records enter and leave the window.
+   *
+   * @param index      the records in year order
+   * @param window     the number of records in each window
+   * @param withStdDev whether to compute the standard deviation as well
+   * @throws IllegalArgumentException if window is not positive
+   */
+  public RollingStats(YearIndex index, int window, boolean withStdDev) {
+    if (window <= 0) {
+      throw new IllegalArgumentException("ERROR: window must be positive");
+    }
+    this.window = window;
+
+    int n = index.size();
+    int count = Math.max(0, n - window + 1);
+    endYears = new int[count];
+    mean = new double[count];
+    min = new int[count];
+    max = new int[count];
+    stdDev = withStdDev ? new double[count] : null;
+
+    int[] days = new int[n];
+    for (int i = 0; i < n; i++) {
+      days[i] = index.getRecord(i).getDaysOfIceCover();
+    }
+
+    // each deque holds positions whose values are monotonic from front to back; a position is
+    // dropped from the back once a better value arrives, and from the front once it leaves the
+    // window, so every position enters and leaves each deque at most once
+    int[] minDeque = new int[n];
+    int[] maxDeque = new int[n];
+    int minHead = 0;
+    int minTail = 0;
+    int maxHead = 0;
+    int maxTail = 0;
+    long sum = 0;
+    long sumSquares = 0;
+
+    for (int i = 0; i < n; i++) {
+      while (minTail > minHead && days[minDeque[minTail - 1]] >= days[i]) {
+        minTail--;
+      }
+      minDeque[minTail++] = i;
+      while (maxTail > maxHead && days[maxDeque[maxTail - 1]] <= days[i]) {
+        maxTail--;
+      }
+      maxDeque[maxTail++] = i;
+      sum += days[i];
+      sumSquares += (long) days[i] * days[i];
+
+      // remove the record that just left the window
+      int out = i - window;
+      if (out >= 0) {
+        sum -= days[out];
+        sumSquares -= (long) days[out] * days[out];
+        if (minDeque[minHead] == out) {
+          minHead++;
+        }
+        if (maxDeque[maxHead] == out) {
+          maxHead++;
+        }
+      }
+
+      int w = i - window + 1;
+      if (w >= 0) {
+        endYears[w] = index.getYear(i);
+        mean[w] = (double) sum / window;
+        min[w] = days[minDeque[minHead]];
+        max[w] = days[maxDeque[maxHead]];
+        if (stdDev != null) {
+          double variance = (double) sumSquares / window - mean[w] * mean[w];
+          stdDev[w] = Math.sqrt(Math.max(0, variance));
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the number of records in each window.
+   *
+   * @return the window length
+   */
+  public int getWindow() {
+    return window;
+  }
+
+  /**
+   * Gets the number of window positions.
+   *
+   * @return the number of windows, 0 if there are fewer records than one window
+   */
+  public int size() {
+    return mean.length;
+  }
+
+  /**
+   * Gets the starting year of the last winter in each window.
+   *
+   * @return the end years, indexed by window position
+   */
+  public int[] getEndYears() {
+    return endYears;
+  }
+
+  /**
+   * Gets the mean days of ice cover of each window.
+   *
+   * @return the means, indexed by window position
+   */
+  public double[] getMean() {
+    return mean;
+  }
+
+  /**
+   * Gets the minimum days of ice cover of each window.
+   *
+   * @return the minimums, indexed by window position
+   */
+  public int[] getMin() {
+    return min;
+  }
+
+  /**
+   * Gets the maximum days of ice cover of each window.
+   *
+   * @return the maximums, indexed by window position
+   */
+  public int[] getMax() {
+    return max;
+  }
+
+  /**
+   * Gets the population standard deviation of each window.
+   *
+   * @return the standard deviations indexed by window position, or null if not requested
+   */
+  public double[] getStdDev() {
+    return stdDev;
+  }
+}
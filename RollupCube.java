@@ -0,0 +1,343 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Pre-aggregated statistics of a list's records by year, decade and century, so that coarse
+ * queries read a single bucket instead of scanning every record.
+ *
+ * Each bucket holds the count, total, minimum and maximum days of ice cover, and the earliest
+ * freeze and latest thaw day of the season. Adding a record updates one bucket per level in O(1)
+ * time. Removing a record updates the count and total directly, but if the record held one of the
+ * bucket's extremes the bucket is marked dirty and rebuilt on the next query: a year from its own
+ * records, a decade from its ten years, and a century from its ten decades.
+ */
+public class RollupCube {
+  /**
+   * Bucket width of the year level
+   */
+  public static final int YEAR = 1;
+  /**
+   * Bucket width of the decade level
+   */
+  public static final int DECADE = 10;
+  /**
+   * Bucket width of the century level
+   */
+  public static final int CENTURY = 100;
+
+  /**
+   * Aggregated statistics of one bucket.
+   */
+  private static class Bucket {
+    /**
+     * Number of records
+     */
+    private int count;
+    /**
+     * Total days of ice cover
+     */
+    private long sum;
+    /**
+     * Minimum days of ice cover
+     */
+    private int min = Integer.MAX_VALUE;
+    /**
+     * Maximum days of ice cover
+     */
+    private int max = Integer.MIN_VALUE;
+    /**
+     * Earliest freeze day of the season, MAX_VALUE if none
+     */
+    private int earliestFreeze = Integer.MAX_VALUE;
+    /**
+     * Latest thaw day of the season, MIN_VALUE if none
+     */
+    private int latestThaw = Integer.MIN_VALUE;
+
+    /**
+     * Adds one record's values to the bucket.
+     *
+     * @param days   the days of ice cover
+     * @param freeze the freeze day of the season, -1 if invalid
+     * @param thaw   the thaw day of the season, -1 if invalid
+     */
+    private void add(int days, int freeze, int thaw) {
+      count++;
+      sum += days;
+      min = Math.min(min, days);
+      max = Math.max(max, days);
+      if (freeze != -1) {
+        earliestFreeze = Math.min(earliestFreeze, freeze);
+      }
+      if (thaw != -1) {
+        latestThaw = Math.max(latestThaw, thaw);
+      }
+    }
+
+    /**
+     * Adds another bucket's statistics to this one.
+     *
+     * @param other a bucket at a finer level, may be null
+     */
+    private void combine(Bucket other) {
+      if (other == null) {
+        return;
+      }
+      count += other.count;
+      sum += other.sum;
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+      earliestFreeze = Math.min(earliestFreeze, other.earliestFreeze);
+      latestThaw = Math.max(latestThaw, other.latestThaw);
+    }
+
+    /**
+     * Converts the bucket into a summary covering the given years.
+     *
+     * @param start the first year of the bucket
+     * @param width the number of years in the bucket
+     * @return the summary of the bucket
+     */
+    private RangeSummary toSummary(int start, int width) {
+      if (count == 0) {
+        return new RangeSummary(start, start + width - 1, 0, 0, 0, 0, null, null);
+      }
+      return new RangeSummary(start, start + width - 1, count, sum, min, max,
+          earliestFreeze == Integer.MAX_VALUE ? null : DateUtil.dateOfSeason(earliestFreeze),
+          latestThaw == Integer.MIN_VALUE ? null : DateUtil.dateOfSeason(latestThaw));
+    }
+  }
+
+  /**
+   * Year buckets keyed by year
+   */
+  private final HashMap<Integer, Bucket> years = new HashMap<>();
+  /**
+   * Decade buckets keyed by first year of the decade
+   */
+  private final HashMap<Integer, Bucket> decades = new HashMap<>();
+  /**
+   * Century buckets keyed by first year of the century
+   */
+  private final HashMap<Integer, Bucket> centuries = new HashMap<>();
+  /**
+   * Years whose buckets must be rebuilt from records
+   */
+  private final HashSet<Integer> dirtyYears = new HashSet<>();
+  /**
+   * Decades whose buckets must be rebuilt from their years
+   */
+  private final HashSet<Integer> dirtyDecades = new HashSet<>();
+  /**
+   * Centuries whose buckets must be rebuilt from their decades
+   */
+  private final HashSet<Integer> dirtyCenturies = new HashSet<>();
+
+  /**
+   * Builds the cube over the list starting at the given head node in O(n) time.
+   *
+   * @param head the first node of the list (may be null)
+   */
+  public RollupCube(DoubleNode head) {
+    for (DoubleNode cur = head; cur != null; cur = cur.getNext()) {
+      add(cur.getLakeRecord());
+    }
+  }
+
+  /**
+   * Finds the first year of the bucket containing the given year.
+   *
+   * @param year  a year
+   * @param width the bucket width
+   * @return the first year of its bucket
+   */
+  private static int bucketStart(int year, int width) {
+    return Math.floorDiv(year, width) * width;
+  }
+
+  /**
+   * Adds a record to one bucket per level in O(1) time.
+   *
+   * @param record the record that was added to the list
+   */
+  public void add(IceDataEntry record) {
+    int year = record.getYear();
+    int days = record.getDaysOfIceCover();
+    int freeze = DateUtil.dayOfSeason(record.getFreezeDate());
+    int thaw = DateUtil.dayOfSeason(record.getThawDate());
+    years.computeIfAbsent(year, k -> new Bucket()).add(days, freeze, thaw);
+    decades.computeIfAbsent(bucketStart(year, DECADE), k -> new Bucket()).add(days, freeze, thaw);
+    centuries.computeIfAbsent(bucketStart(year, CENTURY), k -> new Bucket()).add(days, freeze,
+        thaw);
+  }
+
+  /**
+   * Removes a record from one bucket per level. The count and total are updated in O(1) time; a
+   * bucket whose extreme came from this record is rebuilt on the next query.
+   *
+   * @param record the record that was removed from the list
+   */
+  public void remove(IceDataEntry record) {
+    int year = record.getYear();
+    int days = record.getDaysOfIceCover();
+    int freeze = DateUtil.dayOfSeason(record.getFreezeDate());
+    int thaw = DateUtil.dayOfSeason(record.getThawDate());
+    removeFrom(years, dirtyYears, year, days, freeze, thaw);
+    removeFrom(decades, dirtyDecades, bucketStart(year, DECADE), days, freeze, thaw);
+    removeFrom(centuries, dirtyCenturies, bucketStart(year, CENTURY), days, freeze, thaw);
+  }
+
+  /**
+   * Removes a record's values from one bucket.
+   *
+   * @param level  the buckets of one level
+   * @param dirty  the dirty keys of that level
+   * @param key    the key of the bucket
+   * @param days   the days of ice cover
+   * @param freeze the freeze day of the season, -1 if invalid
+   * @param thaw   the thaw day of the season, -1 if invalid
+   */
+  private static void removeFrom(HashMap<Integer, Bucket> level, HashSet<Integer> dirty, int key,
+      int days, int freeze, int thaw) {
+    Bucket bucket = level.get(key);
+    if (bucket == null) {
+      return;
+    }
+    bucket.count--;
+    bucket.sum -= days;
+    if (bucket.count <= 0) {
+      level.remove(key);
+      dirty.remove(key);
+    } else if (days == bucket.min || days == bucket.max || freeze == bucket.earliestFreeze
+        || thaw == bucket.latestThaw) {
+      dirty.add(key);
+    }
+  }
+
+  /**
+   * Marks the buckets containing the given year as needing a rebuild, e.g. after its records were
+   * merged or changed in place.
+   *
+   * @param year the year whose records changed
+   */
+  public void markDirty(int year) {
+    dirtyYears.add(year);
+    dirtyDecades.add(bucketStart(year, DECADE));
+    dirtyCenturies.add(bucketStart(year, CENTURY));
+  }
+
+  /**
+   * Checks whether any bucket must be rebuilt before the next query.
+   *
+   * @return true if clean() has work to do
+   */
+  public boolean isDirty() {
+    return !dirtyYears.isEmpty() || !dirtyDecades.isEmpty() || !dirtyCenturies.isEmpty();
+  }
+
+  /**
+   * Rebuilds every dirty bucket, years first from the given index, then decades from their years
+   * and centuries from their decades.
+   *
+   * @param index the list's current records in year order
+   */
+  public void clean(YearIndex index) {
+    for (int year : dirtyYears) {
+      Bucket bucket = new Bucket();
+      for (int i = index.lowerBound(year); i < index.size() && index.getYear(i) == year; i++) {
+        IceDataEntry rec = index.getRecord(i);
+        bucket.add(rec.getDaysOfIceCover(), DateUtil.dayOfSeason(rec.getFreezeDate()),
+            DateUtil.dayOfSeason(rec.getThawDate()));
+      }
+      store(years, year, bucket);
+    }
+    rebuild(decades, dirtyDecades, years, DECADE);
+    rebuild(centuries, dirtyCenturies, decades, CENTURY);
+    dirtyYears.clear();
+  }
+
+  /**
+   * Rebuilds the dirty buckets of one level from the ten buckets of the level below.
+   *
+   * @param level the buckets to rebuild
+   * @param dirty the dirty keys of that level, cleared afterwards
+   * @param finer the buckets of the level below
+   * @param width the bucket width of the level being rebuilt
+   */
+  private static void rebuild(HashMap<Integer, Bucket> level, HashSet<Integer> dirty,
+      HashMap<Integer, Bucket> finer, int width) {
+    for (int start : dirty) {
+      Bucket bucket = new Bucket();
+      for (int key = start; key < start + width; key += width / 10) {
+        bucket.combine(finer.get(key));
+      }
+      store(level, start, bucket);
+    }
+    dirty.clear();
+  }
+
+  /**
+   * Stores a rebuilt bucket, dropping it if it is empty.
+   *
+   * @param level  the buckets of one level
+   * @param key    the key of the bucket
+   * @param bucket the rebuilt bucket
+   */
+  private static void store(HashMap<Integer, Bucket> level, int key, Bucket bucket) {
+    if (bucket.count == 0) {
+      level.remove(key);
+    } else {
+      level.put(key, bucket);
+    }
+  }
+
+  /**
+   * Gets the summary of the bucket containing the given year. The cube must be clean.
+   *
+   * @param year  any year in the bucket
+   * @param width YEAR, DECADE or CENTURY
+   * @return the summary of the bucket
+   * @throws IllegalArgumentException if width is not one of the levels
+   */
+  public RangeSummary summary(int year, int width) {
+    int start = bucketStart(year, width);
+    Bucket bucket = levelOf(width).get(start);
+    return (bucket == null ? new Bucket() : bucket).toSummary(start, width);
+  }
+
+  /**
+   * Gets the summaries of every bucket of one level between two years. The cube must be clean.
+   *
+   * @param year1 a year in the first bucket
+   * @param year2 a year in the last bucket
+   * @param width YEAR, DECADE or CENTURY
+   * @return the summary of each bucket in order, including empty ones
+   * @throws IllegalArgumentException if width is not one of the levels
+   */
+  public ArrayList<RangeSummary> summaries(int year1, int year2, int width) {
+    ArrayList<RangeSummary> result = new ArrayList<>();
+    for (int start = bucketStart(year1, width); start <= year2; start += width) {
+      result.add(summary(start, width));
+    }
+    return result;
+  }
+
+  /**
+   * Finds the buckets of the level with the given width.
+   *
+   * @param width YEAR, DECADE or CENTURY
+   * @return the buckets of that level
+   * @throws IllegalArgumentException if width is not one of the levels
+   */
+  private HashMap<Integer, Bucket> levelOf(int width) {
+    if (width == YEAR) {
+      return years;
+    } else if (width == DECADE) {
+      return decades;
+    } else if (width == CENTURY) {
+      return centuries;
+    }
+    throw new IllegalArgumentException("ERROR: width must be YEAR, DECADE or CENTURY");
+  }
+}
@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * An index of the records of a YearIndex bucketed by freeze day and thaw day of the season (one
+ * bucket per day, see DateUtil.dayOfSeason()), so that seasonal window queries such as "froze
+ * before December 10" touch only the matching records instead of parsing every date. A window
+ * matching k records takes O(k log k) time, since the matches are sorted back into year order.
+ *
+ * Each set of buckets is stored as one array of positions grouped by day, with an offsets array
+ * marking where each day's group starts. Positions within a day are in year order.
+ */
+public class SeasonIndex {
+  /**
+   * freezeStart[d] is where the positions of records that froze on day d begin in freezePositions
+   */
+  private final int[] freezeStart;
+  /**
+   * Year-index positions of records with a valid freeze date, grouped by freeze day
+   */
+  private final int[] freezePositions;
+  /**
+   * thawStart[d] is where the positions of records that thawed on day d begin in thawPositions
+   */
+  private final int[] thawStart;
+  /**
+   * Year-index positions of records with a valid thaw date, grouped by thaw day
+   */
+  private final int[] thawPositions;
+
+  /**
+   * Builds the index over every record of the given year index in O(n) time.
+   *
+   * @param index the year index whose positions are stored
+   */
+  public SeasonIndex(YearIndex index) {
+    int n = index.size();
+    int[] freezeDays = new int[n];
+    int[] thawDays = new int[n];
+    for (int i = 0; i < n; i++) {
+      freezeDays[i] = DateUtil.dayOfSeason(index.getRecord(i).getFreezeDate());
+      thawDays[i] = DateUtil.dayOfSeason(index.getRecord(i).getThawDate());
+    }
+
+    freezeStart = new int[DateUtil.DAYS_PER_SEASON + 1];
+    freezePositions = bucket(freezeDays, freezeStart);
+    thawStart = new int[DateUtil.DAYS_PER_SEASON + 1];
+    thawPositions = bucket(thawDays, thawStart);
+  }
+
+  /**
+   * Counting-sorts positions by day, skipping invalid days.
+   *
+   * @param days  the day of the season at each position, -1 if invalid
+   * @param start filled in with the offset at which each day's positions begin
+   * @return the positions grouped by day, in year order within each day
+   */
+  private static int[] bucket(int[] days, int[] start) {
+    // count each day, then turn the counts into starting offsets
+    int valid = 0;
+    for (int day : days) {
+      if (day >= 0) {
+        start[day + 1]++;
+        valid++;
+      }
+    }
+    for (int d = 0; d < DateUtil.DAYS_PER_SEASON; d++) {
+      start[d + 1] += start[d];
+    }
+
+    // place each position in its day's group
+    int[] positions = new int[valid];
+    int[] next = Arrays.copyOf(start, DateUtil.DAYS_PER_SEASON);
+    for (int i = 0; i < days.length; i++) {
+      if (days[i] >= 0) {
+        positions[next[days[i]]++] = i;
+      }
+    }
+    return positions;
+  }
+
+  /**
+   * Finds the records that froze between the given days of the season, inclusive.
+   *
+   * @param fromDay the first day of the window
+   * @param toDay   the last day of the window
+   * @return the matching year-index positions in ascending order
+   */
+  public int[] frozeBetween(int fromDay, int toDay) {
+    return collect(freezeStart, freezePositions, fromDay, toDay);
+  }
+
+  /**
+   * Finds the records that thawed between the given days of the season, inclusive.
+   *
+   * @param fromDay the first day of the window
+   * @param toDay   the last day of the window
+   * @return the matching year-index positions in ascending order
+   */
+  public int[] thawedBetween(int fromDay, int toDay) {
+    return collect(thawStart, thawPositions, fromDay, toDay);
+  }
+
+  /**
+   * Gathers the positions of a window of days in O(k log k) time for k positions. The window is
+   * one contiguous slice of the grouped positions, which is then sorted back into year order
+   * unless it holds a single day, whose group is already in year order.
+   *
+   * @param start     the offsets of each day's group
+   * @param positions the grouped positions
+   * @param fromDay   the first day of the window
+   * @param toDay     the last day of the window
+   * @return the matching positions in ascending order
+   */
+  private static int[] collect(int[] start, int[] positions, int fromDay, int toDay) {
+    int from = Math.max(fromDay, 0);
+    int to = Math.min(toDay, DateUtil.DAYS_PER_SEASON - 1);
+    if (from > to) {
+      return new int[0];
+    }
+    int[] result = Arrays.copyOfRange(positions, start[from], start[to + 1]);
+    if (from < to) {
+      Arrays.sort(result);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,356 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * A list of freeze/thaw records partitioned into LakeIceAnalyzer shards by the year the winter
+ * starts, one shard per span of years (a decade by default), for histories large enough that a
+ * single linked list becomes a bottleneck.
+ *
+ * Each record is routed to one shard, and each shard is locked on its own, so adds and removes
+ * for different spans never wait for each other. Range queries only visit the shards that
+ * overlap the range, and their statistics are computed in parallel on a ForkJoinPool from each
+ * shard's range structures and then combined. Records are kept in shard order, and in insertion
+ * order within a shard. Adds and removes share a read lock that clear() takes for writing, so a
+ * clear cannot drop a shard while a record is being added to it.
+ */
+public class ShardedLakeIceAnalyzer implements ListADT<IceDataEntry> {
+  /**
+   * Default number of years per shard
+   */
+  public static final int DEFAULT_SPAN = 10;
+
+  /**
+   * The shards, keyed by the first year of their span
+   */
+  private final ConcurrentSkipListMap<Integer, LakeIceAnalyzer> shards =
+      new ConcurrentSkipListMap<>();
+  /**
+   * Number of years per shard
+   */
+  private final int span;
+  /**
+   * The pool that runs shard queries
+   */
+  private final ForkJoinPool pool;
+  /**
+   * Number of records across all shards
+   */
+  private final AtomicInteger size = new AtomicInteger();
+  /**
+   * Held for reading while a record is added or removed, and for writing while the shards are
+   * cleared
+   */
+  private final ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+
+  /**
+   * Creates an empty list sharded by decade that runs its queries on the common ForkJoinPool.
+   */
+  public ShardedLakeIceAnalyzer() {
+    this(DEFAULT_SPAN, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates an empty sharded list.
+   *
+   * @param span the number of years per shard
+   * @param pool the pool to run shard queries on
+   * @throws IllegalArgumentException if span is not positive
+   */
+  public ShardedLakeIceAnalyzer(int span, ForkJoinPool pool) {
+    if (span <= 0) {
+      throw new IllegalArgumentException("ERROR: shard span must be positive");
+    }
+    this.span = span;
+    this.pool = pool;
+  }
+
+  /**
+   * Finds the key of the shard holding the given year.
+   *
+   * @param year a winter start year
+   * @return the first year of its shard
+   */
+  private int shardOf(int year) {
+    return Math.floorDiv(year, span) * span;
+  }
+
+  /**
+   * Adds a record to the end of its shard, locking only that shard.
+   *
+   * @param record the record to add
+   */
+  @Override
+  public void add(IceDataEntry record) {
+    structure.readLock().lock();
+    try {
+      LakeIceAnalyzer shard =
+          shards.computeIfAbsent(shardOf(record.getYear()), k -> new LakeIceAnalyzer());
+      synchronized (shard) {
+        shard.add(record);
+      }
+      size.incrementAndGet();
+    } finally {
+      structure.readLock().unlock();
+    }
+  }
+
+  /**
+   * Removes the first record equal to the given one from its shard, locking only that shard.
+   *
+   * @param record the record to remove
+   * @return true if a record was removed
+   */
+  @Override
+  public boolean remove(IceDataEntry record) {
+    structure.readLock().lock();
+    try {
+      LakeIceAnalyzer shard = shards.get(shardOf(record.getYear()));
+      if (shard == null) {
+        return false;
+      }
+      boolean removed;
+      synchronized (shard) {
+        removed = shard.remove(record);
+      }
+      if (removed) {
+        size.decrementAndGet();
+      }
+      return removed;
+    } finally {
+      structure.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the record at index i, counting through the shards in year order.
+   *
+   * @param i a non-negative integer
+   * @return The record at the given index
+   * @throws IndexOutOfBoundsException if i is negative or greater than size()-1
+   */
+  @Override
+  public IceDataEntry get(int i) {
+    if (i >= 0) {
+      int skipped = 0;
+      for (LakeIceAnalyzer shard : shards.values()) {
+        synchronized (shard) {
+          if (i - skipped < shard.size()) {
+            return shard.get(i - skipped);
+          }
+          skipped += shard.size();
+        }
+      }
+    }
+    throw new IndexOutOfBoundsException(
+        "ERROR: Index out of bounds (i is negative or greater than size()-1)");
+  }
+
+  /**
+   * Returns the number of records across all shards.
+   *
+   * @return The size of the list.
+   */
+  @Override
+  public int size() {
+    return size.get();
+  }
+
+  /**
+   * Checks if the list is empty.
+   *
+   * @return True if the list is empty, false otherwise.
+   */
+  @Override
+  public boolean isEmpty() {
+    return size.get() == 0;
+  }
+
+  /**
+   * Removes every shard, waiting for adds and removes in progress to finish first.
+   */
+  @Override
+  public void clear() {
+    structure.writeLock().lock();
+    try {
+      shards.clear();
+      size.set(0);
+    } finally {
+      structure.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the number of shards that have been created.
+   *
+   * @return the number of shards
+   */
+  public int getShardCount() {
+    return shards.size();
+  }
+
+  /**
+   * Finds the shards whose span overlaps the given years.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the overlapping shards in year order
+   */
+  private List<LakeIceAnalyzer> shardsBetween(int year1, int year2) {
+    if (year1 > year2) {
+      return new ArrayList<>();
+    }
+    // the shard holding year1 may start below Integer.MIN_VALUE for very small years
+    long first = Math.floorDiv((long) year1, span) * span;
+    Map<Integer, LakeIceAnalyzer> range = first < Integer.MIN_VALUE ? shards.headMap(year2, true)
+        : shards.subMap((int) first, true, year2, true);
+    return new ArrayList<>(range.values());
+  }
+
+  /**
+   * Returns a new list holding copies of the records whose winter starts between year1 and year2,
+   * inclusive. Only overlapping shards are filtered, in parallel, and the parts are spliced
+   * together in year order.
+   *
+   * @param year1 minimum allowable year for the new list
+   * @param year2 maximum allowable year for the new list
+   * @return a new, filtered linked list covering the given range of years
+   */
+  public LakeIceAnalyzer filterByYear(int year1, int year2) {
+    List<LakeIceAnalyzer> parts = pool.submit(() -> shardsBetween(year1, year2).parallelStream()
+        .map(shard -> {
+          synchronized (shard) {
+            return shard.filterByYear(year1, year2);
+          }
+        }).collect(Collectors.toList())).join();
+    return LakeIceAnalyzer.concat(parts.toArray(new LakeIceAnalyzer[0]));
+  }
+
+  /**
+   * Computes all summary statistics of the winters starting between year1 and year2, inclusive,
+   * by summarizing the overlapping shards in parallel and combining their summaries.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the summary of the range
+   */
+  public RangeSummary summarizeRange(int year1, int year2) {
+    List<RangeSummary> parts = pool.submit(() -> shardsBetween(year1, year2).parallelStream()
+        .map(shard -> {
+          synchronized (shard) {
+            return shard.summarizeRange(year1, year2);
+          }
+        }).collect(Collectors.toList())).join();
+
+    int count = 0;
+    long total = 0;
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+    int earliest = Integer.MAX_VALUE;
+    int latest = -1;
+    for (RangeSummary part : parts) {
+      if (part.getCount() == 0) {
+        continue;
+      }
+      count += part.getCount();
+      total += part.getTotalDays();
+      min = Math.min(min, part.getMinDays());
+      max = Math.max(max, part.getMaxDays());
+      int freeze = DateUtil.dayOfSeason(part.getEarliestFreeze());
+      if (freeze != -1) {
+        earliest = Math.min(earliest, freeze);
+      }
+      latest = Math.max(latest, DateUtil.dayOfSeason(part.getLatestThaw()));
+    }
+    if (count == 0) {
+      return new RangeSummary(year1, year2, 0, 0, 0, 0, null, null);
+    }
+    return new RangeSummary(year1, year2, count, total, min, max,
+        DateUtil.dateOfSeason(earliest), DateUtil.dateOfSeason(latest));
+  }
+
+  /**
+   * Finds the total days of ice cover over the winters starting between year1 and year2,
+   * inclusive.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the total days of ice cover in the range
+   */
+  public long getTotalFreezeDuration(int year1, int year2) {
+    return pool.submit(() -> shardsBetween(year1, year2).parallelStream().mapToLong(shard -> {
+      synchronized (shard) {
+        return shard.getTotalFreezeDuration(year1, year2);
+      }
+    }).sum()).join();
+  }
+
+  /**
+   * Counts the winters starting between year1 and year2, inclusive.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the number of records in the range
+   */
+  public int countByYear(int year1, int year2) {
+    return pool.submit(() -> shardsBetween(year1, year2).parallelStream().mapToInt(shard -> {
+      synchronized (shard) {
+        return shard.countByYear(year1, year2);
+      }
+    }).sum()).join();
+  }
+
+  /**
+   * Finds the average days of ice cover per winter over the winters starting between year1 and
+   * year2, inclusive.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the average days of ice cover, or 0 if there is no winter in the range
+   */
+  public float getAverageFreezeDuration(int year1, int year2) {
+    return summarizeRange(year1, year2).getAverageDays();
+  }
+
+  /**
+   * Builds the histogram of days of ice cover across every shard by merging snapshots of the
+   * shard histograms in parallel.
+   *
+   * @return a new histogram covering all records
+   */
+  public DurationHistogram getDurationHistogram() {
+    return pool.submit(() -> new ArrayList<>(shards.values()).parallelStream().map(shard -> {
+      synchronized (shard) {
+        return shard.getDurationHistogram();
+      }
+    }).reduce(DurationHistogram::merge).orElseGet(DurationHistogram::new)).join();
+  }
+
+  /**
+   * Fits the least squares trend of days of ice cover across every shard by merging snapshots of
+   * the shard sums in parallel.
+   *
+   * @return a new trend covering all records
+   */
+  public TrendStats getTrend() {
+    return pool.submit(() -> new ArrayList<>(shards.values()).parallelStream().map(shard -> {
+      synchronized (shard) {
+        return shard.getTrend();
+      }
+    }).reduce(TrendStats::merge).orElseGet(TrendStats::new)).join();
+  }
+
+  /**
+   * Copies every record into a single list in shard order.
+   *
+   * @return a new list holding copies of all records
+   */
+  public LakeIceAnalyzer toAnalyzer() {
+    return filterByYear(Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+}
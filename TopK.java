@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/**
+ * A bounded min-heap of primitive longs that keeps the k largest values offered to it, in
+ * O(log k) time per offer and O(k) memory.
+ *
+ * Callers rank records by packing a score and a position into each value with pack(); the larger
+ * the score the better, and ties go to the earlier position. Heaps built over separate segments of
+ * a list can be combined with merge().
+ */
+public class TopK {
+  /**
+   * The heap array; heap[0] is the smallest value kept so far
+   */
+  private final long[] heap;
+  /**
+   * Number of values currently in the heap
+   */
+  private int size;
+
+  /**
+   * Creates an empty heap that keeps at most k values.
+   *
+   * @param k the number of values to keep
+   * @throws IllegalArgumentException if k is negative
+   */
+  public TopK(int k) {
+    if (k < 0) {
+      throw new IllegalArgumentException("ERROR: k must not be negative");
+    }
+    heap = new long[k];
+  }
+
+  /**
+   * Packs a score and a list position into a single value that orders by score, then by earlier
+   * position.
+   *
+   * @param score    the score of the record; larger is better
+   * @param position the non-negative position of the record
+   * @return the packed value
+   */
+  public static long pack(int score, int position) {
+    return ((long) score << 32) | (Integer.MAX_VALUE - position);
+  }
+
+  /**
+   * Extracts the position from a packed value.
+   *
+   * @param packed a value produced by pack()
+   * @return the position that was packed into it
+   */
+  public static int position(long packed) {
+    return Integer.MAX_VALUE - (int) (packed & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Offers a value to the heap, keeping it only if it is among the k largest seen so far.
+   *
+   * @param value the packed value to offer
+   */
+  public void offer(long value) {
+    if (size < heap.length) {
+      // still filling up: add at the bottom and sift up
+      int i = size++;
+      while (i > 0 && heap[(i - 1) / 2] > value) {
+        heap[i] = heap[(i - 1) / 2];
+        i = (i - 1) / 2;
+      }
+      heap[i] = value;
+    } else if (size > 0 && value > heap[0]) {
+      // full: replace the smallest kept value and sift down
+      int i = 0;
+      while (2 * i + 1 < size) {
+        int child = 2 * i + 1;
+        if (child + 1 < size && heap[child + 1] < heap[child]) {
+          child++;
+        }
+        if (heap[child] >= value) {
+          break;
+        }
+        heap[i] = heap[child];
+        i = child;
+      }
+      heap[i] = value;
+    }
+  }
+
+  /**
+   * Offers every value kept by another heap to this one.
+   *
+   * @param other another heap, typically built over a different segment of the same list
+   * @return this heap
+   */
+  public TopK merge(TopK other) {
+    for (int i = 0; i < other.size; i++) {
+      offer(other.heap[i]);
+    }
+    return this;
+  }
+
+  /**
+   * Returns the kept values from largest to smallest.
+   *
+   * @return a new array of at most k values, best first
+   */
+  public long[] toSortedArray() {
+    long[] sorted = Arrays.copyOf(heap, size);
+    Arrays.sort(sorted);
+    for (int i = 0; i < sorted.length / 2; i++) {
+      long temp = sorted[i];
+      sorted[i] = sorted[sorted.length - 1 - i];
+      sorted[sorted.length - 1 - i] = temp;
+    }
+    return sorted;
+  }
+}
@@ -0,0 +1,123 @@
+import java.util.Arrays;
+
+/**
+ * Prefix sums of the least squares sufficient statistics over a YearIndex, so that the trend of
+ * any range of years is available in O(log n) time without copying. Records with a missing
+ * duration are left out of the sums.
+ */
+public class TrendIndex {
+  /**
+   * The year index the sums follow
+   */
+  private final YearIndex index;
+  /**
+   * prefixN[i] is the number of records with a duration among the first i records
+   */
+  private final long[] prefixN;
+  /**
+   * Prefix sums of the years
+   */
+  private final long[] prefixX;
+  /**
+   * Prefix sums of the days of ice cover
+   */
+  private final long[] prefixY;
+  /**
+   * Prefix sums of year times days of ice cover
+   */
+  private final long[] prefixXY;
+  /**
+   * Prefix sums of the squared years
+   */
+  private final long[] prefixXX;
+
+  /**
+   * Builds the prefix sums over every record of the given index in O(n) time.
+   *
+   * @param index the records in year order
+   */
+  public TrendIndex(YearIndex index) {
+    this.index = index;
+    int n = index.size();
+    prefixN = new long[n + 1];
+    prefixX = new long[n + 1];
+    prefixY = new long[n + 1];
+    prefixXY = new long[n + 1];
+    prefixXX = new long[n + 1];
+
+    for (int i = 0; i < n; i++) {
+      long x = index.getYear(i);
+      long y = index.getRecord(i).getDaysOfIceCover();
+      boolean known = y != IceDataEntry.MISSING;
+      prefixN[i + 1] = prefixN[i] + (known ? 1 : 0);
+      prefixX[i + 1] = prefixX[i] + (known ? x : 0);
+      prefixY[i + 1] = prefixY[i] + (known ? y : 0);
+      prefixXY[i + 1] = prefixXY[i] + (known ? x * y : 0);
+      prefixXX[i + 1] = prefixXX[i] + (known ? x * x : 0);
+    }
+  }
+
+  /**
+   * Gets the fit of the winters starting between year1 and year2, inclusive.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return a new accumulator holding the sums of the range
+   */
+  public TrendStats range(int year1, int year2) {
+    int from = index.lowerBound(year1);
+    int to = Math.max(from, index.upperBound(year2));
+    return new TrendStats(prefixN[to] - prefixN[from], prefixX[to] - prefixX[from],
+        prefixY[to] - prefixY[from], prefixXY[to] - prefixXY[from],
+        prefixXX[to] - prefixXX[from]);
+  }
+
+  /**
+   * Computes the Theil-Sen slope of the winters starting between year1 and year2, inclusive: the
+   * median of the slopes between every pair of winters with different years. It is robust to
+   * outliers but costs O(m^2 log m) for m winters in the range, so it is meant for single-lake
+   * histories rather than synthetic ensembles.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the median pairwise slope in days per year, or NaN if no such pair exists
+   * @throws IllegalArgumentException if the range holds too many winters to pair up
+   */
+  public double theilSenSlope(int year1, int year2) {
+    int from = index.lowerBound(year1);
+    int to = Math.max(from, index.upperBound(year2));
+    int m = (int) (prefixN[to] - prefixN[from]);
+
+    // gather the winters with a known duration
+    int[] xs = new int[m];
+    int[] ys = new int[m];
+    int k = 0;
+    for (int i = from; i < to; i++) {
+      int y = index.getRecord(i).getDaysOfIceCover();
+      if (y != IceDataEntry.MISSING) {
+        xs[k] = index.getYear(i);
+        ys[k++] = y;
+      }
+    }
+
+    long pairs = (long) m * (m - 1) / 2;
+    if (pairs > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("ERROR: too many winters for a Theil-Sen estimate");
+    }
+    double[] slopes = new double[(int) pairs + 1];
+    int count = 0;
+    for (int i = 0; i < m; i++) {
+      for (int j = i + 1; j < m; j++) {
+        if (xs[j] != xs[i]) {
+          slopes[count++] = (double) (ys[j] - ys[i]) / (xs[j] - xs[i]);
+        }
+      }
+    }
+    if (count == 0) {
+      return Double.NaN;
+    }
+
+    Arrays.sort(slopes, 0, count);
+    return count % 2 == 1 ? slopes[count / 2] : (slopes[count / 2 - 1] + slopes[count / 2]) / 2;
+  }
+}
@@ -0,0 +1,153 @@
+/**
+ * Sufficient statistics for an ordinary least squares fit of days of ice cover against the
+ * starting year of each winter. Records can be added and removed in O(1) time and accumulators can
+ * be merged, so the fit is always available in O(1) without revisiting any records.
+ *
+ * Records with a missing duration should not be added.
+ */
+public class TrendStats {
+  /**
+   * Number of records
+   */
+  private long n;
+  /**
+   * Sum of the years
+   */
+  private long sumX;
+  /**
+   * Sum of the days of ice cover
+   */
+  private long sumY;
+  /**
+   * Sum of year times days of ice cover
+   */
+  private long sumXY;
+  /**
+   * Sum of the squared years
+   */
+  private long sumXX;
+
+  /**
+   * Creates an empty accumulator.
+   */
+  public TrendStats() {
+  }
+
+  /**
+   * Creates an accumulator holding the given sums.
+   *
+   * @param n     the number of records
+   * @param sumX  the sum of the years
+   * @param sumY  the sum of the days of ice cover
+   * @param sumXY the sum of year times days of ice cover
+   * @param sumXX the sum of the squared years
+   */
+  public TrendStats(long n, long sumX, long sumY, long sumXY, long sumXX) {
+    this.n = n;
+    this.sumX = sumX;
+    this.sumY = sumY;
+    this.sumXY = sumXY;
+    this.sumXX = sumXX;
+  }
+
+  /**
+   * Adds one record to the fit.
+   *
+   * @param year the starting year of the winter
+   * @param days the days of ice cover
+   */
+  public void add(int year, int days) {
+    n++;
+    sumX += year;
+    sumY += days;
+    sumXY += (long) year * days;
+    sumXX += (long) year * year;
+  }
+
+  /**
+   * Removes one previously added record from the fit.
+   *
+   * @param year the starting year of the winter
+   * @param days the days of ice cover
+   */
+  public void remove(int year, int days) {
+    n--;
+    sumX -= year;
+    sumY -= days;
+    sumXY -= (long) year * days;
+    sumXX -= (long) year * year;
+  }
+
+  /**
+   * Adds all of another accumulator's records to this one.
+   *
+   * @param other another accumulator
+   * @return this accumulator
+   */
+  public TrendStats merge(TrendStats other) {
+    n += other.n;
+    sumX += other.sumX;
+    sumY += other.sumY;
+    sumXY += other.sumXY;
+    sumXX += other.sumXX;
+    return this;
+  }
+
+  /**
+   * Creates an independent copy of this accumulator.
+   *
+   * @return a new accumulator with the same sums
+   */
+  public TrendStats copy() {
+    return new TrendStats(n, sumX, sumY, sumXY, sumXX);
+  }
+
+  /**
+   * Gets the number of records in the fit.
+   *
+   * @return the number of records
+   */
+  public long count() {
+    return n;
+  }
+
+  /**
+   * Computes the fitted change in days of ice cover per year.
+   *
+   * @return the slope, or NaN if fewer than two distinct years were added
+   */
+  public double getSlope() {
+    // the deviation sums Sxx and Sxy, from the exact raw totals
+    double sxx = sumXX - (double) sumX * sumX / n;
+    double sxy = sumXY - (double) sumX * sumY / n;
+    return n < 2 || sxx <= 0 ? Double.NaN : sxy / sxx;
+  }
+
+  /**
+   * Computes the fitted change in days of ice cover per decade.
+   *
+   * @return ten times the slope, or NaN if it is undefined
+   */
+  public double getDaysPerDecade() {
+    return getSlope() * 10;
+  }
+
+  /**
+   * Computes the fitted days of ice cover in year 0.
+   *
+   * @return the intercept, or NaN if the slope is undefined
+   */
+  public double getIntercept() {
+    return ((double) sumY - getSlope() * sumX) / n;
+  }
+
+  /**
+   * Computes the fitted days of ice cover for the given year.
+   *
+   * @param year the starting year of a winter
+   * @return the fitted value, or NaN if the slope is undefined
+   */
+  public double predict(int year) {
+    return (double) sumY / n + getSlope() * (year - (double) sumX / n);
+  }
+}
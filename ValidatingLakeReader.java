@@ -0,0 +1,273 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Year;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Reads a lake csv file like LakeRecordReader, but classifies every row instead of silently
+ * dropping bad ones, and never uses exceptions to detect bad input: columns, years, dates and
+ * numbers are all checked by hand. The file is split into chunks at line boundaries that are
+ * validated in parallel, and the chunk reports are joined in file order.
+ *
+ * Dates that do not have two words are treated as missing, as LakeRecordReader does, and an empty
+ * duration is MISSING. Every other row is accepted only if all of its fields are valid and its
+ * duration matches the span of its dates, when it has both.
+ */
+public class ValidatingLakeReader {
+  /**
+   * The classification of one row, in the order the checks are made.
+   */
+  public enum RowStatus {
+    /**
+     * The row was accepted
+     */
+    VALID,
+    /**
+     * The row does not have exactly 4 columns
+     */
+    BAD_COLUMN_COUNT,
+    /**
+     * The winter does not start with a four-digit year
+     */
+    BAD_WINTER,
+    /**
+     * A freeze or thaw date is not a valid "Month day" date, or is February 29 of a non-leap year
+     */
+    BAD_DATE,
+    /**
+     * The duration is not a whole number
+     */
+    BAD_DURATION,
+    /**
+     * The duration is negative
+     */
+    NEGATIVE_DURATION,
+    /**
+     * The duration is longer than a season
+     */
+    IMPLAUSIBLE_DURATION,
+    /**
+     * The duration does not match the number of days between the dates
+     */
+    INCONSISTENT_DURATION
+  }
+
+  /**
+   * Default maximum number of rejected rows kept in a report
+   */
+  public static final int DEFAULT_SAMPLE_SIZE = 100;
+  /**
+   * Smallest chunk worth validating on its own thread
+   */
+  private static final int MIN_CHUNK_BYTES = 1 << 16;
+  /**
+   * Day of the season of February 29, which only exists in leap years
+   */
+  private static final int LEAP_DAY = DateUtil.dayOfSeason("February 29");
+
+  /**
+   * Reads and validates a file, keeping up to DEFAULT_SAMPLE_SIZE rejected rows.
+   *
+   * @param file the csv file, with a header line
+   * @return the accepted records, counts and reject sample
+   * @throws IOException if the file cannot be read
+   */
+  public static ValidationReport read(Path file) throws IOException {
+    return read(file, DEFAULT_SAMPLE_SIZE);
+  }
+
+  /**
+   * Reads and validates a file.
+   *
+   * @param file       the csv file, with a header line
+   * @param sampleSize the maximum number of rejected rows to keep
+   * @return the accepted records, counts and reject sample
+   * @throws IOException if the file cannot be read
+   */
+  public static ValidationReport read(Path file, int sampleSize) throws IOException {
+    byte[] bytes = Files.readAllBytes(file);
+    int chunks = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4,
+        bytes.length / MIN_CHUNK_BYTES));
+
+    // each chunk starts after the first line break at or after its even share of the bytes
+    int[] starts = new int[chunks + 1];
+    for (int c = 1; c < chunks; c++) {
+      int pos = Math.max(starts[c - 1], (int) ((long) bytes.length * c / chunks));
+      while (pos < bytes.length && bytes[pos - 1] != '\n') {
+        pos++;
+      }
+      starts[c] = pos;
+    }
+    starts[chunks] = bytes.length;
+
+    List<ValidationReport> parts = IntStream.range(0, chunks).parallel()
+        .mapToObj(c -> validate(bytes, starts[c], starts[c + 1], c == 0, sampleSize))
+        .collect(Collectors.toList());
+    ValidationReport report = parts.get(0);
+    for (int c = 1; c < chunks; c++) {
+      report.append(parts.get(c));
+    }
+    return report;
+  }
+
+  /**
+   * Validates the lines in one chunk of the file.
+   *
+   * @param bytes      the file
+   * @param from       the index of the first byte of the chunk, at the start of a line
+   * @param to         the index after the last byte of the chunk
+   * @param header     whether the chunk starts with the header line
+   * @param sampleSize the maximum number of rejected rows to keep
+   * @return the report of the chunk, with line numbers relative to its start
+   */
+  private static ValidationReport validate(byte[] bytes, int from, int to, boolean header,
+      int sampleSize) {
+    ValidationReport report = new ValidationReport(sampleSize);
+    int start = from;
+    while (start < to) {
+      int end = start;
+      while (end < to && bytes[end] != '\n') {
+        end++;
+      }
+      int next = end + 1;
+      if (end > start && bytes[end - 1] == '\r') {
+        end--;
+      }
+      String line = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+      if (header) {
+        report.skipRow();
+        header = false;
+      } else {
+        IceDataEntry[] record = new IceDataEntry[1];
+        RowStatus status = classify(line, record);
+        report.addRow(status, record[0], line);
+      }
+      start = next;
+    }
+    return report;
+  }
+
+  /**
+   * Classifies one data line, parsing it into a record if it is valid.
+   *
+   * @param line   the line without its terminator
+   * @param record receives the parsed record at index 0 if the line is valid
+   * @return the status of the line
+   */
+  static RowStatus classify(String line, IceDataEntry[] record) {
+    String[] fields = new String[4];
+    int field = 0;
+    int start = 0;
+    for (int i = 0; i <= line.length(); i++) {
+      if (i == line.length() || line.charAt(i) == ',') {
+        if (field == 4) {
+          return RowStatus.BAD_COLUMN_COUNT;
+        }
+        fields[field++] = unquote(line.substring(start, i));
+        start = i + 1;
+      }
+    }
+    if (field != 4) {
+      return RowStatus.BAD_COLUMN_COUNT;
+    }
+
+    String winter = fields[0];
+    if (winter.length() < 4) {
+      return RowStatus.BAD_WINTER;
+    }
+    for (int i = 0; i < 4; i++) {
+      if (winter.charAt(i) < '0' || winter.charAt(i) > '9') {
+        return RowStatus.BAD_WINTER;
+      }
+    }
+    int year = (winter.charAt(0) - '0') * 1000 + (winter.charAt(1) - '0') * 100
+        + (winter.charAt(2) - '0') * 10 + (winter.charAt(3) - '0');
+
+    // dates without exactly two words are missing, as in LakeRecordReader
+    String freezeDate = fields[1].split(" ").length == 2 ? fields[1] : null;
+    String thawDate = fields[2].split(" ").length == 2 ? fields[2] : null;
+    int freeze = DateUtil.dayOfSeason(freezeDate);
+    int thaw = DateUtil.dayOfSeason(thawDate);
+    if ((freezeDate != null && freeze == -1) || (thawDate != null && thaw == -1)) {
+      return RowStatus.BAD_DATE;
+    }
+    // the season counts February 29 every year, but it only exists in leap years
+    if ((freeze == LEAP_DAY || thaw == LEAP_DAY) && !Year.isLeap(year + 1L)) {
+      return RowStatus.BAD_DATE;
+    }
+
+    int days = IceDataEntry.MISSING;
+    String daysText = fields[3];
+    if (!daysText.isEmpty()) {
+      boolean negative = daysText.charAt(0) == '-';
+      int digits = daysText.length() - (negative ? 1 : 0);
+      if (digits == 0) {
+        return RowStatus.BAD_DURATION;
+      }
+      long value = 0;
+      for (int i = negative ? 1 : 0; i < daysText.length(); i++) {
+        char c = daysText.charAt(i);
+        if (c < '0' || c > '9') {
+          return RowStatus.BAD_DURATION;
+        }
+        value = Math.min(value * 10 + (c - '0'), Integer.MAX_VALUE);
+      }
+      if (negative && value > 0) {
+        return RowStatus.NEGATIVE_DURATION;
+      }
+      if (value > DateUtil.DAYS_PER_SEASON) {
+        return RowStatus.IMPLAUSIBLE_DURATION;
+      }
+      days = (int) value;
+    }
+
+    if (days != IceDataEntry.MISSING && freeze != -1 && thaw != -1) {
+      if (days != span(year, freeze, thaw)) {
+        return RowStatus.INCONSISTENT_DURATION;
+      }
+    }
+
+    record[0] = new IceDataEntry(winter, freezeDate, thawDate, days);
+    return RowStatus.VALID;
+  }
+
+  /**
+   * Counts the days between two days of the season, as DateUtil.daysBetween() does for valid
+   * dates but without building LocalDates.
+   *
+   * @param year   the starting year of the winter
+   * @param freeze the freeze day of the season
+   * @param thaw   the thaw day of the season
+   * @return the number of days from freeze to thaw
+   */
+  private static int span(int year, int freeze, int thaw) {
+    int days = thaw - freeze;
+    // the season counts February 29 every year, but it only exists in leap years
+    if (!Year.isLeap(year + 1L)) {
+      if (freeze <= LEAP_DAY && thaw > LEAP_DAY) {
+        days--;
+      } else if (thaw <= LEAP_DAY && freeze > LEAP_DAY) {
+        days++;
+      }
+    }
+    return days;
+  }
+
+  /**
+   * Trims a field and removes its surrounding quotes, if any.
+   *
+   * @param value the raw field
+   * @return the unquoted, trimmed field
+   */
+  private static String unquote(String value) {
+    String trimmed = value.trim();
+    if (trimmed.length() >= 2 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+      return trimmed.substring(1, trimmed.length() - 1).trim();
+    }
+    return trimmed;
+  }
+}
@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+
+/**
+ * The outcome of reading a lake csv file with ValidatingLakeReader: the accepted records, a count
+ * of rows per status, and a bounded sample of the rejected rows.
+ */
+public class ValidationReport {
+  /**
+   * One rejected row of the file.
+   */
+  public static class Reject {
+    /**
+     * Line number of the row in the file, starting at 1 for the header
+     */
+    private final long line;
+    /**
+     * Why the row was rejected
+     */
+    private final ValidatingLakeReader.RowStatus status;
+    /**
+     * The text of the row
+     */
+    private final String text;
+
+    /**
+     * Constructor to initialize a rejected row.
+     *
+     * @param line   The line number of the row.
+     * @param status Why the row was rejected.
+     * @param text   The text of the row.
+     */
+    public Reject(long line, ValidatingLakeReader.RowStatus status, String text) {
+      this.line = line;
+      this.status = status;
+      this.text = text;
+    }
+
+    /**
+     * Gets the line number of the row.
+     *
+     * @return the line number, starting at 1 for the header
+     */
+    public long getLine() {
+      return line;
+    }
+
+    /**
+     * Gets why the row was rejected.
+     *
+     * @return the status of the row
+     */
+    public ValidatingLakeReader.RowStatus getStatus() {
+      return status;
+    }
+
+    /**
+     * Gets the text of the row.
+     *
+     * @return the row as it appears in the file
+     */
+    public String getText() {
+      return text;
+    }
+
+    /**
+     * Converts the rejected row into a readable string.
+     *
+     * @return A string representation of the rejected row.
+     */
+    @Override
+    public String toString() {
+      return "line " + line + " (" + status + "): " + text;
+    }
+  }
+
+  /**
+   * Number of rows of each status, indexed by ordinal
+   */
+  private final long[] counts = new long[ValidatingLakeReader.RowStatus.values().length];
+  /**
+   * The accepted records in file order
+   */
+  private final ArrayList<IceDataEntry> records = new ArrayList<>();
+  /**
+   * The first rejected rows, at most sampleSize of them
+   */
+  private final ArrayList<Reject> sample = new ArrayList<>();
+  /**
+   * Maximum number of rejected rows kept
+   */
+  private final int sampleSize;
+  /**
+   * Number of rows counted, used to number the rows of a merged report
+   */
+  private long lines;
+
+  /**
+   * Creates an empty report.
+   *
+   * @param sampleSize the maximum number of rejected rows to keep
+   */
+  public ValidationReport(int sampleSize) {
+    this.sampleSize = sampleSize;
+  }
+
+  /**
+   * Records the outcome of the next row.
+   *
+   * @param status the status of the row
+   * @param record the parsed record if the row was accepted, null otherwise
+   * @param text   the text of the row, only used if it was rejected
+   */
+  void addRow(ValidatingLakeReader.RowStatus status, IceDataEntry record, String text) {
+    lines++;
+    counts[status.ordinal()]++;
+    if (status == ValidatingLakeReader.RowStatus.VALID) {
+      records.add(record);
+    } else if (sample.size() < sampleSize) {
+      sample.add(new Reject(lines, status, text));
+    }
+  }
+
+  /**
+   * Skips a row without counting it, e.g. the header.
+   */
+  void skipRow() {
+    lines++;
+  }
+
+  /**
+   * Appends the rows of a report covering the part of the file after this one.
+   *
+   * @param next the report of the following rows
+   * @return this report
+   */
+  ValidationReport append(ValidationReport next) {
+    for (int s = 0; s < counts.length; s++) {
+      counts[s] += next.counts[s];
+    }
+    records.addAll(next.records);
+    for (Reject reject : next.sample) {
+      if (sample.size() == sampleSize) {
+        break;
+      }
+      sample.add(new Reject(lines + reject.getLine(), reject.getStatus(), reject.getText()));
+    }
+    lines += next.lines;
+    return this;
+  }
+
+  /**
+   * Gets the number of rows with the given status.
+   *
+   * @param status a row status
+   * @return the number of rows with that status
+   */
+  public long getCount(ValidatingLakeReader.RowStatus status) {
+    return counts[status.ordinal()];
+  }
+
+  /**
+   * Gets the number of rejected rows.
+   *
+   * @return the number of rows that were not VALID
+   */
+  public long getRejectCount() {
+    long total = 0;
+    for (int s = 0; s < counts.length; s++) {
+      total += counts[s];
+    }
+    return total - counts[ValidatingLakeReader.RowStatus.VALID.ordinal()];
+  }
+
+  /**
+   * Gets the first rejected rows, in file order.
+   *
+   * @return a new list of at most sampleSize rejected rows
+   */
+  public ArrayList<Reject> getRejectSample() {
+    return new ArrayList<>(sample);
+  }
+
+  /**
+   * Gets the accepted records in file order.
+   *
+   * @return a new list of the accepted records
+   */
+  public ArrayList<IceDataEntry> getRecords() {
+    return new ArrayList<>(records);
+  }
+
+  /**
+   * Builds a list of the accepted records the way a normal load does, assuming the file lists the
+   * newest winters first as LakeRecordReader does: the records are put in chronological order,
+   * incomplete ones are dropped and rows of the same winter are merged into one record.
+   *
+   * @return a new list holding copies of the accepted records, one per winter
+   */
+  public LakeIceAnalyzer toAnalyzer() {
+    ArrayList<IceDataEntry> chronological = new ArrayList<>();
+    for (int i = records.size() - 1; i >= 0; i--) {
+      chronological.add(records.get(i).copy());
+    }
+    return new LakeIceAnalyzer(chronological);
+  }
+}
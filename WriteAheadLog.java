@@ -0,0 +1,717 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Makes live edits of a LakeIceAnalyzer durable by writing each add, remove and replace to an
+ * append-only log in a directory, on top of a snapshot of the whole list. Opening the directory
+ * again loads the snapshot and replays the log, giving back the list as it was after the last
+ * edit that returned.
+ *
+ * Edits are applied to the list and appended to an in-memory batch while holding one lock, so the
+ * log order is the order the edits were applied in. Each caller then waits until its edit is on
+ * disk: the first waiting caller writes the whole batch and forces it with a single fsync while
+ * later callers start the next batch, so concurrent edits share one fsync per group commit. Once
+ * the log holds compactThreshold entries, it is compacted by writing a new snapshot and starting
+ * an empty log.
+ *
+ * The snapshot and log both carry a generation number. A compaction writes the snapshot of the
+ * next generation before resetting the log, so a log older than its snapshot is known to be
+ * already included in it and is discarded if a crash happens in between. Every log entry has a
+ * length and checksum, and a torn entry at the end of the log is cut off on replay.
+ *
+ * Edits are visible in the list before they are durable. If a write fails, the failing callers and
+ * every later one get an IOException, and the list may hold edits that are not in the log. An
+ * automatic compaction that fails is not reported to the caller whose edit triggered it, since
+ * that edit is already durable; it is retried after the next batch unless it failed after the new
+ * snapshot was in place, which stops the log like a failed write.
+ */
+public class WriteAheadLog implements Closeable {
+  /**
+   * Name of the log file in the directory
+   */
+  public static final String LOG_FILE = "lake.wal";
+  /**
+   * Name of the snapshot file in the directory
+   */
+  public static final String SNAPSHOT_FILE = "lake.snapshot";
+  /**
+   * Default number of log entries that triggers a compaction
+   */
+  public static final int DEFAULT_COMPACT_THRESHOLD = 10000;
+  /**
+   * Identifies a log file ("LIW1")
+   */
+  static final int LOG_MAGIC = 0x4C495731;
+  /**
+   * Identifies a snapshot file ("LIS1")
+   */
+  static final int SNAPSHOT_MAGIC = 0x4C495331;
+  /**
+   * Bytes in the log header: magic and generation
+   */
+  private static final int LOG_HEADER_BYTES = 12;
+  /**
+   * Log entry adding a record
+   */
+  private static final byte ADD = 1;
+  /**
+   * Log entry removing a record
+   */
+  private static final byte REMOVE = 2;
+  /**
+   * Log entry replacing a record with a corrected one
+   */
+  private static final byte REPLACE = 3;
+
+  /**
+   * The directory holding the snapshot and log
+   */
+  private final Path dir;
+  /**
+   * The list the edits are applied to
+   */
+  private final LakeIceAnalyzer analyzer;
+  /**
+   * The log file, positioned at its end
+   */
+  private final FileChannel log;
+  /**
+   * Number of log entries that triggers a compaction, or 0 to never compact automatically
+   */
+  private final int compactThreshold;
+  /**
+   * Guards the batch, sequence numbers and flushing flag, and orders edits
+   */
+  private final Object lock = new Object();
+  /**
+   * Entries appended since the last batch was taken
+   */
+  private final ByteArrayOutputStream batch = new ByteArrayOutputStream();
+  /**
+   * Reused buffer for encoding one entry
+   */
+  private final ByteArrayOutputStream entry = new ByteArrayOutputStream();
+  /**
+   * Generation of the current log
+   */
+  private long generation;
+  /**
+   * Sequence number of the last entry appended
+   */
+  private long appended;
+  /**
+   * Sequence number of the last entry forced to disk
+   */
+  private long durable;
+  /**
+   * Whether a caller is writing a batch or compacting
+   */
+  private boolean flushing;
+  /**
+   * The first write failure, after which no edit is accepted
+   */
+  private IOException failure;
+  /**
+   * Number of entries in the current log
+   */
+  private int logEntries;
+  /**
+   * Number of batches forced to disk
+   */
+  private long groupCommits;
+  /**
+   * Whether close() has been called
+   */
+  private boolean closed;
+
+  /**
+   * Opens the log in a directory with the default compaction threshold, creating the directory if
+   * needed and recovering the list from its snapshot and log.
+   *
+   * @param dir the directory holding the snapshot and log
+   * @throws IOException if the files cannot be read or written
+   */
+  public WriteAheadLog(Path dir) throws IOException {
+    this(dir, DEFAULT_COMPACT_THRESHOLD);
+  }
+
+  /**
+   * Opens the log in a directory, creating the directory if needed and recovering the list from
+   * its snapshot and log.
+   *
+   * @param dir              the directory holding the snapshot and log
+   * @param compactThreshold the number of log entries that triggers a compaction, or 0 to only
+   *                         compact when compact() is called
+   * @throws IOException if the files cannot be read or written, or hold the wrong format
+   */
+  public WriteAheadLog(Path dir, int compactThreshold) throws IOException {
+    if (compactThreshold < 0) {
+      throw new IllegalArgumentException("ERROR: compaction threshold must not be negative");
+    }
+    this.dir = dir;
+    this.compactThreshold = compactThreshold;
+    this.analyzer = new LakeIceAnalyzer();
+    Files.createDirectories(dir);
+
+    Path snapshot = dir.resolve(SNAPSHOT_FILE);
+    if (Files.exists(snapshot)) {
+      generation = readSnapshot(snapshot);
+    }
+
+    log = FileChannel.open(dir.resolve(LOG_FILE), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      replay();
+    } catch (IOException e) {
+      log.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Gets the recovered list the edits are applied to. Read it while holding its monitor, since
+   * edits from other threads change it under that monitor; edit it only through this log.
+   *
+   * @return the list
+   */
+  public LakeIceAnalyzer getAnalyzer() {
+    return analyzer;
+  }
+
+  /**
+   * Adds a record to the end of the list and returns once the edit is on disk.
+   *
+   * @param record the record to add
+   * @throws IOException if the log cannot be written
+   */
+  public void add(IceDataEntry record) throws IOException {
+    long seq;
+    synchronized (lock) {
+      checkWritable();
+      synchronized (analyzer) {
+        analyzer.add(record);
+      }
+      seq = append(ADD, record, null);
+    }
+    awaitDurable(seq);
+  }
+
+  /**
+   * Removes the first record equal to the given one and returns once the edit is on disk. Nothing
+   * is logged if no record was removed.
+   *
+   * @param record the record to remove
+   * @return true if a record was removed
+   * @throws IOException if the log cannot be written
+   */
+  public boolean remove(IceDataEntry record) throws IOException {
+    long seq;
+    synchronized (lock) {
+      checkWritable();
+      boolean removed;
+      synchronized (analyzer) {
+        removed = analyzer.remove(record);
+      }
+      if (!removed) {
+        return false;
+      }
+      seq = append(REMOVE, record, null);
+    }
+    awaitDurable(seq);
+    return true;
+  }
+
+  /**
+   * Replaces the first record equal to the given one with a corrected record, e.g. one with a
+   * corrected duration, and returns once the edit is on disk. Nothing is logged if no record was
+   * replaced.
+   *
+   * @param record    the record to replace
+   * @param corrected the record to put in its place
+   * @return true if a record was replaced
+   * @throws IOException if the log cannot be written
+   */
+  public boolean replace(IceDataEntry record, IceDataEntry corrected) throws IOException {
+    long seq;
+    synchronized (lock) {
+      checkWritable();
+      boolean replaced;
+      synchronized (analyzer) {
+        replaced = analyzer.replace(record, corrected);
+      }
+      if (!replaced) {
+        return false;
+      }
+      seq = append(REPLACE, record, corrected);
+    }
+    awaitDurable(seq);
+    return true;
+  }
+
+  /**
+   * Writes a snapshot of the whole list and starts an empty log, waiting for any batch being
+   * written first. Edits wait until the compaction is done.
+   *
+   * @throws IOException if the snapshot or log cannot be written
+   */
+  public void compact() throws IOException {
+    synchronized (lock) {
+      checkWritable();
+      awaitIdle();
+      try {
+        compactLocked();
+      } finally {
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Writes a snapshot of the whole list and starts an empty log. Must be called while holding the
+   * lock with no batch being written. A failure before the new snapshot replaces the old one
+   * leaves the log in use and can be retried; a failure after it stops the log, since later
+   * entries could otherwise land in a log that replay discards.
+   *
+   * @throws IOException if the snapshot or log cannot be written
+   */
+  private void compactLocked() throws IOException {
+    long next = generation + 1;
+    Path snapshot = dir.resolve(SNAPSHOT_FILE);
+    Path temp = dir.resolve(SNAPSHOT_FILE + ".tmp");
+    try {
+      synchronized (analyzer) {
+        writeSnapshot(temp, next);
+      }
+      Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      try {
+        Files.deleteIfExists(temp);
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
+    }
+
+    try {
+      // the rename must be on disk before the log of the next generation, or a crash could leave
+      // a log newer than its snapshot
+      syncDirectory();
+
+      // every appended entry is in the snapshot, so the batch is dropped with the old log
+      resetLog(next);
+      batch.reset();
+      durable = appended;
+      logEntries = 0;
+    } catch (IOException e) {
+      failure = e;
+      throw e;
+    }
+  }
+
+  /**
+   * Forces every appended edit to disk and closes the log. Later edits throw an exception.
+   *
+   * @throws IOException if the last batch cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    long seq;
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      seq = appended;
+    }
+    try {
+      if (failure == null) {
+        awaitDurable(seq);
+      }
+    } finally {
+      synchronized (lock) {
+        awaitIdle();
+        log.close();
+      }
+    }
+  }
+
+  /**
+   * Gets the number of batches forced to disk since the log was opened.
+   *
+   * @return the number of group commits
+   */
+  public long getGroupCommitCount() {
+    synchronized (lock) {
+      return groupCommits;
+    }
+  }
+
+  /**
+   * Gets the number of entries in the current log, i.e. since the last compaction.
+   *
+   * @return the number of log entries
+   */
+  public int getLogEntryCount() {
+    synchronized (lock) {
+      return logEntries;
+    }
+  }
+
+  /**
+   * Throws if no edit may be made. Must be called while holding the lock.
+   *
+   * @throws IOException if the log is closed or a write has failed
+   */
+  private void checkWritable() throws IOException {
+    if (closed) {
+      throw new IOException("ERROR: write-ahead log is closed");
+    }
+    if (failure != null) {
+      throw new IOException("ERROR: write-ahead log failed earlier", failure);
+    }
+  }
+
+  /**
+   * Waits until no caller is writing a batch. Must be called while holding the lock; the log stays
+   * idle only until the lock is next released, since flushing is not set here.
+   *
+   * @throws InterruptedIOException if the thread is interrupted while waiting
+   */
+  private void awaitIdle() throws InterruptedIOException {
+    while (flushing) {
+      waitForLock();
+    }
+  }
+
+  /**
+   * Waits for the lock to be notified. Must be called while holding the lock.
+   *
+   * @throws InterruptedIOException if the thread is interrupted while waiting
+   */
+  private void waitForLock() throws InterruptedIOException {
+    try {
+      lock.wait();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("ERROR: interrupted while waiting for the log");
+    }
+  }
+
+  /**
+   * Encodes an entry onto the current batch. Must be called while holding the lock.
+   *
+   * @param op        the kind of entry
+   * @param record    the record added, removed or replaced
+   * @param corrected the replacing record, or null
+   * @return the sequence number of the entry
+   */
+  private long append(byte op, IceDataEntry record, IceDataEntry corrected) {
+    entry.reset();
+    DataOutputStream out = new DataOutputStream(entry);
+    try {
+      out.writeByte(op);
+      writeRecord(out, record);
+      if (corrected != null) {
+        writeRecord(out, corrected);
+      }
+      CRC32 crc = new CRC32();
+      crc.update(entry.toByteArray());
+      DataOutputStream framed = new DataOutputStream(batch);
+      framed.writeInt(entry.size());
+      framed.writeInt((int) crc.getValue());
+      entry.writeTo(framed);
+    } catch (IOException e) {
+      // byte array streams do not throw
+      throw new IllegalStateException(e);
+    }
+    logEntries++;
+    return ++appended;
+  }
+
+  /**
+   * Returns once the entry with the given sequence number is on disk. If no other caller is
+   * writing, this caller writes and forces everything appended so far as one batch.
+   *
+   * @param seq the sequence number of the entry
+   * @throws IOException if the batch cannot be written
+   */
+  private void awaitDurable(long seq) throws IOException {
+    ByteBuffer pending;
+    long last;
+    synchronized (lock) {
+      while (durable < seq && flushing) {
+        waitForLock();
+      }
+      if (durable >= seq) {
+        return;
+      }
+      if (failure != null) {
+        throw new IOException("ERROR: write-ahead log failed earlier", failure);
+      }
+      flushing = true;
+      pending = ByteBuffer.wrap(batch.toByteArray());
+      batch.reset();
+      last = appended;
+    }
+
+    // later callers append to the next batch while this one is written
+    IOException error = null;
+    try {
+      while (pending.hasRemaining()) {
+        log.write(pending);
+      }
+      log.force(false);
+    } catch (IOException e) {
+      error = e;
+    }
+
+    synchronized (lock) {
+      flushing = false;
+      if (error == null) {
+        durable = last;
+        groupCommits++;
+      } else if (failure == null) {
+        failure = error;
+      }
+
+      // compact in the same locked section, so close() cannot slip in between; the edit is
+      // already durable, so a failed compaction is not reported to its caller
+      if (error == null && !closed && failure == null && compactThreshold > 0
+          && logEntries >= compactThreshold) {
+        try {
+          compactLocked();
+        } catch (IOException e) {
+          // kept in failure if the log can no longer be used, otherwise retried next batch
+        }
+      }
+      lock.notifyAll();
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Applies the entries of the log to the list, cutting off a torn entry at its end. A log older
+   * than the snapshot is already included in it and is replaced by an empty one.
+   *
+   * @throws IOException if the log cannot be read or has the wrong format
+   */
+  private void replay() throws IOException {
+    ByteBuffer bytes = ByteBuffer.allocate((int) log.size());
+    while (bytes.hasRemaining()) {
+      if (log.read(bytes) == -1) {
+        break;
+      }
+    }
+    bytes.flip();
+
+    if (bytes.remaining() < LOG_HEADER_BYTES) {
+      // a new log, or one torn while its header was written
+      resetLog(generation);
+      syncDirectory();
+      return;
+    }
+    if (bytes.getInt() != LOG_MAGIC) {
+      throw new IOException("ERROR: not a write-ahead log: " + dir.resolve(LOG_FILE));
+    }
+    long logGeneration = bytes.getLong();
+    if (logGeneration < generation) {
+      resetLog(generation);
+      return;
+    }
+    if (logGeneration > generation) {
+      throw new IOException("ERROR: write-ahead log is newer than its snapshot");
+    }
+
+    long valid = bytes.position();
+    while (bytes.remaining() >= 8) {
+      int length = bytes.getInt();
+      int checksum = bytes.getInt();
+      if (length <= 0 || length > bytes.remaining()) {
+        break;
+      }
+      byte[] payload = new byte[length];
+      bytes.get(payload);
+      CRC32 crc = new CRC32();
+      crc.update(payload);
+      if ((int) crc.getValue() != checksum) {
+        break;
+      }
+      apply(payload);
+      logEntries++;
+      valid = bytes.position();
+    }
+
+    log.truncate(valid);
+    log.position(valid);
+  }
+
+  /**
+   * Applies one decoded log entry to the list.
+   *
+   * @param payload the entry without its length and checksum
+   * @throws IOException if the entry is malformed
+   */
+  private void apply(byte[] payload) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+    byte op = in.readByte();
+    IceDataEntry record = readRecord(in);
+    switch (op) {
+      case ADD:
+        analyzer.add(record);
+        break;
+      case REMOVE:
+        analyzer.remove(record);
+        break;
+      case REPLACE:
+        analyzer.replace(record, readRecord(in));
+        break;
+      default:
+        throw new IOException("ERROR: unknown write-ahead log entry " + op);
+    }
+  }
+
+  /**
+   * Forces the directory's entries to disk, so a renamed or created file survives a crash. Some
+   * platforms cannot open a directory for this; renames there are left to the file system.
+   *
+   * @throws IOException if the directory cannot be forced
+   */
+  private void syncDirectory() throws IOException {
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(dir, StandardOpenOption.READ);
+    } catch (IOException e) {
+      return;
+    }
+    try (channel) {
+      channel.force(true);
+    }
+  }
+
+  /**
+   * Empties the log and writes the header of a new generation, forcing it to disk.
+   *
+   * @param next the generation of the new log
+   * @throws IOException if the log cannot be written
+   */
+  private void resetLog(long next) throws IOException {
+    log.truncate(0);
+    ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES);
+    header.putInt(LOG_MAGIC).putLong(next).flip();
+    log.position(0);
+    while (header.hasRemaining()) {
+      log.write(header);
+    }
+    log.force(false);
+    generation = next;
+  }
+
+  /**
+   * Reads a snapshot into the list.
+   *
+   * @param snapshot the snapshot file
+   * @return the generation of the snapshot
+   * @throws IOException if the file cannot be read or has the wrong format
+   */
+  private long readSnapshot(Path snapshot) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(snapshot)))) {
+      if (in.readInt() != SNAPSHOT_MAGIC) {
+        throw new IOException("ERROR: not a write-ahead log snapshot: " + snapshot);
+      }
+      long snapshotGeneration = in.readLong();
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        analyzer.add(readRecord(in));
+      }
+      return snapshotGeneration;
+    } catch (EOFException e) {
+      throw new IOException("ERROR: truncated write-ahead log snapshot: " + snapshot, e);
+    }
+  }
+
+  /**
+   * Writes every record of the list, in list order, to a snapshot file and forces it to disk.
+   *
+   * @param file       the file to write
+   * @param generation the generation of the log that will follow the snapshot
+   * @throws IOException if the file cannot be written
+   */
+  private void writeSnapshot(Path file, long generation) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeLong(generation);
+      out.writeInt(analyzer.size());
+      for (DoubleNode cur = analyzer.getHead(); cur != null; cur = cur.getNext()) {
+        writeRecord(out, cur.getLakeRecord());
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+    }
+  }
+
+  /**
+   * Writes one record.
+   *
+   * @param out    the stream to write to
+   * @param record the record
+   * @throws IOException if the stream cannot be written
+   */
+  private static void writeRecord(DataOutputStream out, IceDataEntry record) throws IOException {
+    out.writeUTF(record.getWinter());
+    writeDate(out, record.getFreezeDate());
+    writeDate(out, record.getThawDate());
+    out.writeInt(record.getDaysOfIceCover());
+  }
+
+  /**
+   * Writes a date that may be missing.
+   *
+   * @param out  the stream to write to
+   * @param date the date, or null
+   * @throws IOException if the stream cannot be written
+   */
+  private static void writeDate(DataOutputStream out, String date) throws IOException {
+    out.writeBoolean(date != null);
+    if (date != null) {
+      out.writeUTF(date);
+    }
+  }
+
+  /**
+   * Reads one record written by writeRecord().
+   *
+   * @param in the stream to read from
+   * @return the record
+   * @throws IOException if the stream cannot be read
+   */
+  private static IceDataEntry readRecord(DataInputStream in) throws IOException {
+    String winter = in.readUTF();
+    String freezeDate = in.readBoolean() ? in.readUTF() : null;
+    String thawDate = in.readBoolean() ? in.readUTF() : null;
+    return new IceDataEntry(winter, freezeDate, thawDate, in.readInt());
+  }
+}
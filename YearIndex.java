@@ -0,0 +1,249 @@
+import java.util.Arrays;
+
+/**
+ * A year-ordered snapshot of the records in a LakeIceAnalyzer, holding prefix sums of the days of
+ * ice cover so that the total, count and average over any range of years can be answered in O(1)
+ * after an O(log n) year lookup.
+ *
+ * The index is built in O(n) from a chronological list (O(n log n) if the list is out of order) and
+ * can be extended in amortized O(1) when a record is appended in year order. A record whose
+ * duration changed in place can be patched with refresh(); the prefix sums after it are then
+ * recomputed lazily on the next query. Any structural change to the list should discard the index
+ * and build a new one.
+ */
+public class YearIndex {
+  /**
+   * The starting year of each indexed winter, in non-decreasing order
+   */
+  private int[] years;
+  /**
+   * The records in the same order as years
+   */
+  private IceDataEntry[] records;
+  /**
+   * prefixDays[i] is the total days of ice cover of the first i records
+   */
+  private long[] prefixDays;
+  /**
+   * Number of indexed records
+   */
+  private int size;
+  /**
+   * First prefix sum that is out of date, or size if all of them are current
+   */
+  private int dirtyFrom;
+
+  /**
+   * Builds an index over the list starting at the given head node.
+   *
+   * @param head the first node of the list (may be null)
+   * @param size the number of nodes in the list
+   */
+  public YearIndex(DoubleNode head, int size) {
+    years = new int[Math.max(size, 1)];
+    records = new IceDataEntry[years.length];
+    prefixDays = new long[years.length + 1];
+
+    // copy the years and records out of the list, noting whether they are already chronological
+    boolean sorted = true;
+    for (DoubleNode cur = head; cur != null; cur = cur.getNext()) {
+      ensureCapacity(this.size + 1);
+      records[this.size] = cur.getLakeRecord();
+      years[this.size] = records[this.size].getYear();
+      if (this.size > 0 && years[this.size] < years[this.size - 1]) {
+        sorted = false;
+      }
+      this.size++;
+    }
+
+    // out-of-order lists are sorted by year, keeping list order between records of the same year
+    if (!sorted) {
+      long[] keys = new long[this.size];
+      for (int i = 0; i < this.size; i++) {
+        keys[i] = ((long) years[i] << 32) | i;
+      }
+      Arrays.sort(keys);
+      IceDataEntry[] ordered = new IceDataEntry[records.length];
+      for (int i = 0; i < this.size; i++) {
+        ordered[i] = records[(int) keys[i]];
+        years[i] = (int) (keys[i] >> 32);
+      }
+      records = ordered;
+    }
+
+    dirtyFrom = 0;
+    settle();
+  }
+
+  /**
+   * Checks whether the given record can be appended without breaking the year order.
+   *
+   * @param record the record about to be added to the end of the list
+   * @return true if append(record) keeps this index valid
+   */
+  public boolean canAppend(IceDataEntry record) {
+    return size == 0 || record.getYear() >= years[size - 1];
+  }
+
+  /**
+   * Extends the index with a record appended to the end of the list, in amortized O(1) time. Only
+   * call this after canAppend(record) returned true.
+   *
+   * @param record the record that was appended
+   */
+  public void append(IceDataEntry record) {
+    ensureCapacity(size + 1);
+    records[size] = record;
+    years[size] = record.getYear();
+    if (dirtyFrom == size) {
+      prefixDays[size + 1] = prefixDays[size] + record.getDaysOfIceCover();
+      dirtyFrom++;
+    }
+    size++;
+  }
+
+  /**
+   * Marks the record at the given position as changed in place, so that the prefix sums from that
+   * position on are recomputed before the next query.
+   *
+   * @param i the position of the changed record
+   */
+  public void refresh(int i) {
+    dirtyFrom = Math.min(dirtyFrom, i);
+  }
+
+  /**
+   * Recomputes any out-of-date prefix sums.
+   */
+  private void settle() {
+    for (int i = dirtyFrom; i < size; i++) {
+      prefixDays[i + 1] = prefixDays[i] + records[i].getDaysOfIceCover();
+    }
+    dirtyFrom = size;
+  }
+
+  /**
+   * Finds the position of the given record (by identity) in year order, in O(log n) time plus the
+   * number of records sharing its year.
+   *
+   * @param record a record contained in the list
+   * @return its position, or -1 if it is not indexed
+   */
+  public int positionOf(IceDataEntry record) {
+    int year = record.getYear();
+    for (int i = lowerBound(year); i < size && years[i] == year; i++) {
+      if (records[i] == record) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Grows the backing arrays so that they can hold at least the given number of records.
+   *
+   * @param capacity the number of records required
+   */
+  private void ensureCapacity(int capacity) {
+    if (capacity > years.length) {
+      int newLength = Math.max(capacity, years.length * 2);
+      years = Arrays.copyOf(years, newLength);
+      records = Arrays.copyOf(records, newLength);
+      prefixDays = Arrays.copyOf(prefixDays, newLength + 1);
+    }
+  }
+
+  /**
+   * Gets the number of indexed records.
+   *
+   * @return the number of records
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the record at the given position in year order.
+   *
+   * @param i a position between 0 and size()-1
+   * @return the record at that position
+   */
+  public IceDataEntry getRecord(int i) {
+    return records[i];
+  }
+
+  /**
+   * Gets the year of the record at the given position in year order.
+   *
+   * @param i a position between 0 and size()-1
+   * @return the starting year of that record's winter
+   */
+  public int getYear(int i) {
+    return years[i];
+  }
+
+  /**
+   * Finds the first position whose year is at least the given year.
+   *
+   * @param year the year to search for
+   * @return the position of the first record from year or later, or size() if there is none
+   */
+  public int lowerBound(int year) {
+    int lo = 0;
+    int hi = size;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (years[mid] < year) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Finds the first position whose year is greater than the given year.
+   *
+   * @param year the year to search for
+   * @return the position just past the last record from year or earlier
+   */
+  public int upperBound(int year) {
+    return year == Integer.MAX_VALUE ? size : lowerBound(year + 1);
+  }
+
+  /**
+   * Sums the days of ice cover of the records at positions from (inclusive) to (exclusive).
+   *
+   * @param from the first position
+   * @param to   one past the last position
+   * @return the total days of ice cover, or 0 if the range is empty
+   */
+  public long sumBetween(int from, int to) {
+    settle();
+    return to > from ? prefixDays[to] - prefixDays[from] : 0;
+  }
+
+  /**
+   * Counts the records whose winter starts between year1 and year2, inclusive.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the number of records in the range
+   */
+  public int rangeCount(int year1, int year2) {
+    return Math.max(0, upperBound(year2) - lowerBound(year1));
+  }
+
+  /**
+   * Sums the days of ice cover of the records whose winter starts between year1 and year2,
+   * inclusive.
+   *
+   * @param year1 the first year of the range
+   * @param year2 the last year of the range
+   * @return the total days of ice cover in the range
+   */
+  public long rangeSum(int year1, int year2) {
+    return sumBetween(lowerBound(year1), upperBound(year2));
+  }
+}